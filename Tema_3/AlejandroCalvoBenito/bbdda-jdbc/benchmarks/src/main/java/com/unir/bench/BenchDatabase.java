@@ -0,0 +1,165 @@
+package com.unir.bench;
+
+import com.unir.intake.BulkUpsertEngine;
+import com.unir.intake.Mappings;
+import com.unir.intake.SqlDialect;
+import com.unir.model.MySqlEmployee;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base de datos de los benchmarks, compartida por todos los hilos de una prueba.
+ *
+ * Por defecto arranca un servidor H2 en modo MySQL con la base de datos en memoria, y las conexiones van por TCP.
+ * Así cada sentencia es un viaje de red real (local), que es justo lo que diferencia una fila por sentencia de un lote
+ * o el fetch size. Con una conexión embebida esas diferencias casi desaparecerían.
+ *
+ * Para medir contra un MySQL local, se indica la URL de un schema vacío con -Dbench.url, -Dbench.user y -Dbench.password.
+ * Si la URL no las lleva, se añaden rewriteBatchedStatements=true (lotes en un único INSERT multi-fila) y useCursorFetch=true
+ * (sin él, MySQL ignora el fetch size y devuelve el resultado entero: ReadBenchmark mediría siempre lo mismo).
+ * OJO! Las tablas employees y employees_stage del schema se borran y se vuelven a crear.
+ */
+@State(Scope.Benchmark)
+public class BenchDatabase {
+
+    private static final String H2_URL = "jdbc:h2:tcp://localhost:%d/mem:bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static final String EMPLOYEES_DDL = """
+            CREATE TABLE %s (
+                emp_no INT NOT NULL PRIMARY KEY,
+                birth_date DATE NOT NULL,
+                first_name VARCHAR(14) NOT NULL,
+                last_name VARCHAR(16) NOT NULL,
+                gender CHAR(1) NOT NULL,
+                hire_date DATE NOT NULL
+            )""";
+
+    // Filas por lote al rellenar las tablas. No forma parte de lo que se mide
+    private static final int LOTE_CARGA = 1000;
+
+    private static final LocalDate NACIMIENTO = LocalDate.of(1960, 1, 1);
+    private static final LocalDate CONTRATACION = LocalDate.of(1990, 1, 1);
+
+    private Server server;
+    private String url;
+    private String user;
+    private String password;
+
+    @Setup(Level.Trial)
+    public void start() throws SQLException, IOException {
+        url = System.getProperty("bench.url");
+        if (url == null) {
+            int port;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            // -ifNotExists: la base de datos en memoria se crea con la primera conexión
+            server = Server.createTcpServer("-tcpPort", String.valueOf(port), "-ifNotExists").start();
+            url = String.format(H2_URL, port);
+            user = "sa";
+            password = "";
+        } else {
+            url = withParameter(withParameter(url, "rewriteBatchedStatements"), "useCursorFetch");
+            user = System.getProperty("bench.user", "root");
+            password = System.getProperty("bench.password", "");
+        }
+
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement()) {
+            for (String table : List.of("employees", "employees_stage")) {
+                statement.execute("DROP TABLE IF EXISTS " + table);
+                statement.execute(String.format(EMPLOYEES_DDL, table));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    /**
+     * @return - Nueva conexión a la base de datos. La cierra quien la pide
+     * @throws SQLException - Error al conectar
+     */
+    public Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    /**
+     * @return - true si se mide contra MySQL en lugar de H2
+     */
+    public boolean isMySql() {
+        return url.startsWith("jdbc:mysql:");
+    }
+
+    /**
+     * Añade un parámetro de conexión de MySQL con valor true, si la URL es de MySQL y no lo indica ya.
+     * @param url - URL de conexión
+     * @param name - Nombre del parámetro
+     * @return - URL con el parámetro
+     */
+    private static String withParameter(String url, String name) {
+        if (!url.startsWith("jdbc:mysql:") || url.contains(name + "=")) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + name + "=true";
+    }
+
+    /**
+     * Deja en employees exactamente los empleados [1, count].
+     * @param count - Número de empleados
+     * @throws SQLException - Error al cargar la tabla
+     */
+    public void fill(int count) throws SQLException {
+        try (Connection connection = connect()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DELETE FROM employees");
+            }
+            try (BulkUpsertEngine<MySqlEmployee> engine = new BulkUpsertEngine<>(connection, SqlDialect.MYSQL, Mappings.EMPLOYEES, LOTE_CARGA)) {
+                for (MySqlEmployee employee : employees(1, count)) {
+                    engine.add(employee);
+                }
+            }
+            connection.commit();
+        }
+    }
+
+    /**
+     * Genera empleados con números consecutivos. Siempre los mismos datos para los mismos números.
+     * @param first - Primer número de empleado
+     * @param count - Número de empleados
+     * @return - Empleados
+     */
+    public static List<MySqlEmployee> employees(int first, int count) {
+        List<MySqlEmployee> employees = new ArrayList<>(count);
+        for (int empNo = first; empNo < first + count; empNo++) {
+            employees.add(new MySqlEmployee(
+                    empNo,
+                    "Nombre" + empNo % 1000,
+                    "Apellido" + empNo % 5000,
+                    empNo % 2 == 0 ? "F" : "M",
+                    Date.valueOf(CONTRATACION.plusDays(empNo % 10000)),
+                    Date.valueOf(NACIMIENTO.plusDays(empNo % 7000))));
+        }
+        return employees;
+    }
+}
@@ -0,0 +1,29 @@
+package com.unir.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lanza los benchmarks y guarda el resultado en JSON, para poder compararlo con el de ejecuciones anteriores.
+ * Admite las mismas opciones que JMH (por ejemplo, "UpsertBenchmark" para lanzar solo esos o -p size=5 para un único tamaño).
+ * Si no se indica -rff, el resultado se guarda en jmh-result.json.
+ */
+public class Benchmarks {
+
+    private static final String RESULTADO = "jmh-result.json";
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions command = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(command)
+                .resultFormat(ResultFormatType.JSON)
+                .result(command.getResult().orElse(RESULTADO))
+                .build();
+        new Runner(options).run();
+    }
+}
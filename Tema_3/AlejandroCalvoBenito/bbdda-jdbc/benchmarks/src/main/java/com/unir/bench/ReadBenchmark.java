@@ -0,0 +1,102 @@
+package com.unir.bench;
+
+import com.unir.jdbc.Cursors;
+import com.unir.jdbc.RowMapper;
+import com.unir.jdbc.RowMappers;
+import com.unir.model.MySqlEmployee;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara formas de leer la tabla employees completa:
+ * - byLabel y byIndex: cada columna buscada por su nombre en cada fila, o con un {@link RowMapper}, que las busca una vez.
+ * - fetchSize: lectura con un cursor ({@link Cursors}) y distintos números de filas por viaje.
+ *
+ * Los empleados se consumen con un Blackhole para que el JIT no elimine la lectura.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ReadBenchmark {
+
+    private static final String SQL = "SELECT * FROM employees";
+
+    @Param({"100000"})
+    public int rows;
+
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void open(BenchDatabase database) throws SQLException {
+        database.fill(rows);
+        connection = database.connect();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public void byLabel(Blackhole blackhole) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(SQL);
+             ResultSet employees = select.executeQuery()) {
+            while (employees.next()) {
+                blackhole.consume(new MySqlEmployee(
+                        employees.getInt("emp_no"),
+                        employees.getString("first_name"),
+                        employees.getString("last_name"),
+                        employees.getString("gender"),
+                        employees.getDate("hire_date"),
+                        employees.getDate("birth_date")));
+            }
+        }
+    }
+
+    @Benchmark
+    public void byIndex(Blackhole blackhole) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(SQL);
+             ResultSet employees = select.executeQuery()) {
+            RowMappers.EMPLOYEES.forEach(employees, blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void fetchSize(FetchSize fetchSize, Blackhole blackhole) throws SQLException {
+        try (PreparedStatement select = Cursors.prepare(connection, SQL, fetchSize.size);
+             ResultSet employees = select.executeQuery()) {
+            RowMappers.EMPLOYEES.forEach(employees, blackhole::consume);
+        }
+    }
+
+    /**
+     * Filas por viaje de {@link #fetchSize}. En un estado aparte para que solo multipliquen ese benchmark.
+     */
+    @State(Scope.Thread)
+    public static class FetchSize {
+
+        @Param({"10", "100", "1000", "10000"})
+        public int size;
+    }
+}
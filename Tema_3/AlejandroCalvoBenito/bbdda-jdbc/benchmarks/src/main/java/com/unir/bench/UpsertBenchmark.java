@@ -0,0 +1,170 @@
+package com.unir.bench;
+
+import com.unir.intake.BulkUpsertEngine;
+import com.unir.intake.Mappings;
+import com.unir.intake.SqlDialect;
+import com.unir.model.MySqlEmployee;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara las tres formas de volcar empleados sobre la tabla employees:
+ * - perRow: SELECT COUNT(*) y después UPDATE o INSERT, una fila cada vez (como hacía la carga original).
+ * - batched: {@link BulkUpsertEngine}, un INSERT ... ON DUPLICATE KEY UPDATE por fila enviado por lotes, con varios tamaños de lote.
+ * - setBased: las filas se cargan por lotes en una tabla auxiliar y una única sentencia las vuelca sobre employees.
+ *
+ * Cada invocación vuelca las mismas filas: la mitad ya existen (se actualizan) y la otra mitad son nuevas (se insertan).
+ * El resultado es el tiempo por invocación, de modo que las filas por segundo son rows / tiempo.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UpsertBenchmark {
+
+    private static final String SELECT_SQL = "SELECT COUNT(*) FROM employees WHERE emp_no = ?";
+    private static final String UPDATE_SQL = "UPDATE employees SET first_name = ?, last_name = ?, gender = ?, hire_date = ?, birth_date = ? WHERE emp_no = ?";
+    private static final String INSERT_SQL = "INSERT INTO employees (emp_no, first_name, last_name, gender, hire_date, birth_date) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String STAGE_SQL = "INSERT INTO employees_stage (emp_no, first_name, last_name, gender, hire_date, birth_date) VALUES (?, ?, ?, ?, ?, ?)";
+
+    // En MySQL, el volcado de la tabla auxiliar es un INSERT ... SELECT ... ON DUPLICATE KEY UPDATE
+    private static final String MERGE_STAGE_MYSQL = """
+            INSERT INTO employees (emp_no, first_name, last_name, gender, hire_date, birth_date)
+            SELECT emp_no, first_name, last_name, gender, hire_date, birth_date FROM employees_stage
+            ON DUPLICATE KEY UPDATE first_name = VALUES(first_name), last_name = VALUES(last_name),
+                gender = VALUES(gender), hire_date = VALUES(hire_date), birth_date = VALUES(birth_date)""";
+
+    // H2 no admite ON DUPLICATE KEY UPDATE con INSERT ... SELECT, así que se usa el MERGE del estándar
+    private static final String MERGE_STAGE_H2 = """
+            MERGE INTO employees t USING employees_stage s ON (t.emp_no = s.emp_no)
+            WHEN MATCHED THEN UPDATE SET first_name = s.first_name, last_name = s.last_name,
+                gender = s.gender, hire_date = s.hire_date, birth_date = s.birth_date
+            WHEN NOT MATCHED THEN INSERT (emp_no, first_name, last_name, gender, hire_date, birth_date)
+                VALUES (s.emp_no, s.first_name, s.last_name, s.gender, s.hire_date, s.birth_date)""";
+
+    // Filas enviadas a la tabla auxiliar en cada lote
+    private static final int LOTE_STAGE = 1000;
+
+    @Param({"1000"})
+    public int rows;
+
+    private BenchDatabase database;
+    private Connection connection;
+    private List<MySqlEmployee> employees;
+
+    @Setup(Level.Trial)
+    public void open(BenchDatabase database) throws SQLException {
+        this.database = database;
+        this.connection = database.connect();
+        this.connection.setAutoCommit(false);
+        this.employees = BenchDatabase.employees(rows / 2 + 1, rows);
+    }
+
+    /**
+     * Vuelve a dejar la tabla con la mitad de las filas antes de cada invocación.
+     * Level.Invocation solo es aceptable porque cada invocación dura milisegundos.
+     */
+    @Setup(Level.Invocation)
+    public void reset() throws SQLException {
+        database.fill(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public void perRow() throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(SELECT_SQL);
+             PreparedStatement update = connection.prepareStatement(UPDATE_SQL);
+             PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+
+            for (MySqlEmployee employee : employees) {
+                select.setInt(1, employee.getEmployeeId());
+                int count;
+                try (ResultSet resultSet = select.executeQuery()) {
+                    resultSet.next();
+                    count = resultSet.getInt(1);
+                }
+
+                if (count > 0) {
+                    update.setString(1, employee.getFirstName());
+                    update.setString(2, employee.getLastName());
+                    update.setString(3, employee.getGender());
+                    update.setDate(4, employee.getHireDate());
+                    update.setDate(5, employee.getBirthDate());
+                    update.setInt(6, employee.getEmployeeId());
+                    update.executeUpdate();
+                } else {
+                    Mappings.EMPLOYEES.getBinder().bind(insert, employee);
+                    insert.executeUpdate();
+                }
+            }
+        }
+        connection.commit();
+    }
+
+    @Benchmark
+    public void batched(BatchSize batchSize) throws SQLException {
+        try (BulkUpsertEngine<MySqlEmployee> engine = new BulkUpsertEngine<>(connection, SqlDialect.MYSQL, Mappings.EMPLOYEES, batchSize.size)) {
+            for (MySqlEmployee employee : employees) {
+                engine.add(employee);
+            }
+        }
+        connection.commit();
+    }
+
+    @Benchmark
+    public void setBased() throws SQLException {
+        try (PreparedStatement stage = connection.prepareStatement(STAGE_SQL);
+             Statement statement = connection.createStatement()) {
+
+            int pending = 0;
+            for (MySqlEmployee employee : employees) {
+                Mappings.EMPLOYEES.getBinder().bind(stage, employee);
+                stage.addBatch();
+                if (++pending == LOTE_STAGE) {
+                    stage.executeBatch();
+                    pending = 0;
+                }
+            }
+            stage.executeBatch();
+
+            statement.executeUpdate(database.isMySql() ? MERGE_STAGE_MYSQL : MERGE_STAGE_H2);
+            statement.executeUpdate("DELETE FROM employees_stage");
+        }
+        connection.commit();
+    }
+
+    /**
+     * Tamaños de lote de {@link #batched}. En un estado aparte para que solo multipliquen ese benchmark.
+     */
+    @State(Scope.Thread)
+    public static class BatchSize {
+
+        @Param({"1", "5", "50", "500"})
+        public int size;
+    }
+}
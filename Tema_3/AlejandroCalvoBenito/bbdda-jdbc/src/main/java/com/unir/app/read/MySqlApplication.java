@@ -1,51 +1,139 @@
 package com.unir.app.read;
 
+import com.unir.config.ConnectionPool;
 import com.unir.config.MySqlConnector;
+import com.unir.jdbc.Cursors;
+import com.unir.jdbc.QueryCache;
+import com.unir.jdbc.ReportRunner;
+import com.unir.jdbc.RowMapper;
+import com.unir.jdbc.RowMappers;
+import com.unir.jdbc.StatementCache;
+import com.unir.model.MySqlEmployee;
 import lombok.extern.slf4j.Slf4j;
 
 import java.sql.*;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
 
 @Slf4j
 public class MySqlApplication {
 
     private static final String DATABASE = "employees";
 
+    // Sentencias preparadas que se mantienen abiertas por conexión
+    private static final int SENTENCIAS = 32;
+
+    // Filas que se traen del servidor en cada viaje al recorrer tablas completas
+    private static final int FETCH = 1000;
+
+    // Tiempo máximo de cada consulta del informe
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    // Departamentos del schema employees: d001 a d009
+    private static final int DEPARTAMENTOS = 9;
+
+    // Consultas que solo devuelven un recuento
+    private static final RowMapper<Long> TOTALS = RowMapper.of((rs, col) -> rs.getLong(col[0]), "Total");
+
+    private static final RowMapper<GenderTotal> GENDER_TOTALS = RowMapper.of(
+            (rs, col) -> new GenderTotal(rs.getString(col[0]), rs.getLong(col[1])),
+            "gender", "Total");
+
     public static void main(String[] args) {
 
+        // Con el argumento "dashboard" se lanzan todas las consultas a la vez, cada una con su conexión
+        if (args.length > 0 && args[0].equals("dashboard")) {
+            dashboard();
+            return;
+        }
+
         //Creamos conexion. No es necesario indicar puerto en host si usamos el default, 1521
         //Try-with-resources. Se cierra la conexión automáticamente al salir del bloque try
-        try(Connection connection = new MySqlConnector("localhost", DATABASE).getConnection()) {
+        //El registro de sentencias prepara cada consulta una sola vez y las cierra todas al salir
+        try(Connection connection = new MySqlConnector("localhost", DATABASE).getConnection();
+            StatementCache statements = new StatementCache(connection, SENTENCIAS)) {
 
             log.info("Conexión establecida con la base de datos MySQL");
 
-            //selectAllEmployeesOfDepartment(connection, "d001");
-            //selectAllEmployeesOfDepartment(connection, "d002");
+            //selectAllEmployees(connection, FETCH);
+            //selectAllEmployeesOfDepartment(statements, "d001");
+            //selectAllEmployeesOfDepartment(statements, "d002");
 
             // Primer ejercicio
-            selectAllGenderEmployees(connection);
+            selectAllGenderEmployees(statements);
+            log.debug("{}", QueryCache.shared());
 
         } catch (Exception e) {
             log.error("Error al tratar con la base de datos", e);
         }
     }
 
+    /**
+     * Lanza todas las consultas del informe a la vez (ver {@link ReportRunner}).
+     * Cada consulta tiene su propia conexión y su propio registro de sentencias, y un tiempo máximo de {@link #TIMEOUT}.
+     * Una consulta lenta o fallida no impide que terminen las demás.
+     */
+    private static void dashboard() {
+        long start = System.nanoTime();
+        try (ReportRunner runner = new ReportRunner(ConnectionPool.mysql("localhost", DATABASE))) {
+
+            runner.submit("genderEmployees", TIMEOUT, report(MySqlApplication::selectAllGenderEmployees));
+            for (int i = 1; i <= DEPARTAMENTOS; i++) {
+                String department = String.format("d%03d", i);
+                runner.submit("employeesOfDepartment " + department, TIMEOUT,
+                        report(statements -> selectAllEmployeesOfDepartment(statements, department)));
+            }
+
+            int failed = runner.awaitAll();
+            log.info("Informe terminado en {} ms ({} consultas fallidas)", (System.nanoTime() - start) / 1_000_000, failed);
+        }
+    }
+
+    /**
+     * Adapta una consulta que usa un registro de sentencias a una consulta del {@link ReportRunner}.
+     */
+    private static ReportRunner.Query<Void> report(Report report) {
+        return connection -> {
+            try (StatementCache statements = new StatementCache(connection, SENTENCIAS)) {
+                report.run(statements);
+            }
+            return null;
+        };
+    }
+
     /**
      * Ejemplo de consulta a la base de datos usando Statement.
      * Statement es la forma más básica de ejecutar consultas a la base de datos.
      * Es la más insegura, ya que no se protege de ataques de inyección SQL.
      * No obstante es útil para sentencias DDL.
+     * La tabla se recorre con un cursor (ver {@link Cursors}): las filas llegan en bloques de fetchSize
+     * según se leen, en lugar de cargar la tabla entera en memoria antes de devolver la primera.
+     * Con {@link Cursors#STREAMING} MySQL envía las filas una a una.
      * @param connection
+     * @param fetchSize - Filas que se traen del servidor en cada viaje
      * @throws SQLException
      */
-    private static void selectAllEmployees(Connection connection) throws SQLException {
-        Statement selectEmployees = connection.createStatement();
-        ResultSet employees = selectEmployees.executeQuery("select * from employees");
-
-        while (employees.next()) {
-            log.debug("Employee: {} {}",
-                    employees.getString("first_name"),
-                    employees.getString("last_name"));
+    private static void selectAllEmployees(Connection connection, int fetchSize) throws SQLException {
+        long start = System.nanoTime();
+        long rows = 0;
+
+        try (Statement selectEmployees = Cursors.open(connection, fetchSize);
+             ResultSet employees = selectEmployees.executeQuery("select * from employees")) {
+
+            // Las columnas se buscan por nombre una sola vez, no en cada fila
+            RowMapper.Bound<MySqlEmployee> mapper = RowMappers.EMPLOYEES.resolve(employees.getMetaData());
+            while (employees.next()) {
+                MySqlEmployee employee = mapper.map(employees);
+                if (rows++ == 0) {
+                    log.debug("Primera fila en {} ms", (System.nanoTime() - start) / 1_000_000);
+                }
+                log.debug("Employee: {} {}",
+                        employee.getFirstName(),
+                        employee.getLastName());
+            }
         }
+        log.info("Leídos {} empleados en {} ms", rows, (System.nanoTime() - start) / 1_000_000);
     }
 
     /**
@@ -53,39 +141,47 @@ public class MySqlApplication {
      * PreparedStatement es la forma más segura de ejecutar consultas a la base de datos.
      * Se protege de ataques de inyección SQL.
      * Es útil para sentencias DML.
-     * @param connection
+     * La sentencia se obtiene del registro, de modo que solo se prepara la primera vez que se llama.
+     * El resultado se guarda en la caché de consultas mientras dure el proceso (ver {@link QueryCache}).
+     * @param statements
      * @throws SQLException
      */
-    private static void selectAllEmployeesOfDepartment(Connection connection, String department) throws SQLException {
-        PreparedStatement selectEmployees = connection.prepareStatement("select count(*) as 'Total'\n" +
+    private static void selectAllEmployeesOfDepartment(StatementCache statements, String department) throws SQLException {
+        List<Long> totals = QueryCache.shared().query(statements, "employeesOfDepartment", "select count(*) as 'Total'\n" +
                 "from employees emp\n" +
                 "inner join dept_emp dep_rel on emp.emp_no = dep_rel.emp_no\n" +
                 "inner join departments dep on dep_rel.dept_no = dep.dept_no\n" +
-                "where dep_rel.dept_no = ?;\n");
-        selectEmployees.setString(1, department);
-        ResultSet employees = selectEmployees.executeQuery();
-
-        while (employees.next()) {
-            log.debug("Empleados del departamento {}: {}",
-                    department,
-                    employees.getString("Total"));
+                "where dep_rel.dept_no = ?;\n",
+                Set.of("employees", "dept_emp", "departments"),
+                TOTALS,
+                department);
+
+        for (long total : totals) {
+            log.debug("Empleados del departamento {}: {}", department, total);
         }
     }
 
     // 1. Obtener el número de hombres y mujeres de la base de datos. Ordenar de forma descendente.
-    private static void selectAllGenderEmployees(Connection connection) throws SQLException {
-        PreparedStatement selectEmployees = connection.prepareStatement("select gender, COUNT(*) as 'Total'\n" +
+    private static void selectAllGenderEmployees(StatementCache statements) throws SQLException {
+        List<GenderTotal> totals = QueryCache.shared().query(statements, "genderEmployees", "select gender, COUNT(*) as 'Total'\n" +
                 "from employees.employees\n" +
                 "GROUP BY gender\n" +
-                "ORDER BY Total DESC\n");
-        ResultSet employees = selectEmployees.executeQuery();
+                "ORDER BY Total DESC\n",
+                Set.of("employees"),
+                GENDER_TOTALS);
 
-        while (employees.next()) {
-            log.debug("Género: {}, Total: {}",
-                    employees.getString("gender"),
-                    employees.getString("Total"));
+        for (GenderTotal total : totals) {
+            log.debug("Género: {}, Total: {}", total.gender(), total.total());
         }
     }
 
     // 2.Mostrar el nombre, apellido y salario de la persona mejor pagada de un departamento concreto (parámetro variable).
+
+    private record GenderTotal(String gender, long total) {
+    }
+
+    @FunctionalInterface
+    private interface Report {
+        void run(StatementCache statements) throws SQLException;
+    }
 }
@@ -0,0 +1,47 @@
+package com.unir.app.read;
+
+import com.unir.config.ConnectionPool;
+import com.unir.export.ExportFormat;
+import com.unir.export.KeysetExporter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Exporta las tablas employees o salaries de MySQL a un fichero CSV o JSON, leyendo varios rangos de la tabla a la vez.
+ * Uso: MySqlExportApplication [employees|salaries] [csv|json]
+ * El fichero se crea en la raíz del proyecto, con el nombre de la tabla.
+ */
+@Slf4j
+public class MySqlExportApplication {
+
+    private static final String DATABASE = "employees";
+
+    // Filas que se traen del servidor en cada viaje
+    private static final int FETCH = 1000;
+
+    public static void main(String[] args) {
+
+        String table = args.length > 0 ? args[0] : "employees";
+        ExportFormat format = args.length > 1 ? ExportFormat.valueOf(args[1].toUpperCase()) : ExportFormat.CSV;
+
+        // Las tablas que se pueden exportar y su clave primaria. El nombre de la tabla no se concatena sin comprobarlo
+        List<String> keyColumns = switch (table) {
+            case "employees" -> List.of("emp_no");
+            case "salaries" -> List.of("emp_no", "from_date");
+            default -> throw new IllegalArgumentException("Tabla no soportada: " + table);
+        };
+
+        try {
+            KeysetExporter exporter = new KeysetExporter(
+                    ConnectionPool.mysql("localhost", DATABASE),
+                    Runtime.getRuntime().availableProcessors(),
+                    FETCH);
+            exporter.export(table, keyColumns, format, Path.of(table + "." + format.getExtension()));
+
+        } catch (Exception e) {
+            log.error("Error al tratar con la base de datos", e);
+        }
+    }
+}
@@ -1,8 +1,16 @@
 package com.unir.app.read;
 
 import com.unir.config.OracleDatabaseConnector;
+import com.unir.jdbc.Cursors;
+import com.unir.jdbc.StatementCache;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.sql.*;
 
 import static oracle.xml.xslt.XSLConstants.AS;
@@ -12,18 +20,34 @@ public class OracleApplication {
 
     private static final String SERVICE_NAME = "orcl";
 
+    // Sentencias preparadas que se mantienen abiertas por conexión
+    private static final int SENTENCIAS = 32;
+
+    // Filas que se traen del servidor en cada viaje al recorrer tablas completas
+    private static final int FETCH = 1000;
+
+    // Fichero del informe de managers, en la raíz del proyecto
+    private static final String MANAGERS_XML = "managers.xml";
+
     public static void main(String[] args) {
 
         //Creamos conexion. No es necesario indicar puerto en host si usamos el default, 1521
         //Try-with-resources. Se cierra la conexión automáticamente al salir del bloque try
-        try(Connection connection = new OracleDatabaseConnector("localhost", SERVICE_NAME).getConnection()) {
+        //El registro de sentencias prepara cada consulta una sola vez y las cierra todas al salir
+        try(Connection connection = new OracleDatabaseConnector("localhost", SERVICE_NAME).getConnection();
+            StatementCache statements = new StatementCache(connection, SENTENCIAS)) {
 
             log.debug("Conexión establecida con la base de datos Oracle");
 
-            //selectAllEmployees(connection);
-            //selectAllCountriesAsXml(connection);
-            selectAllEmployeesAsXml(connection);
-            selectAllManagersAsXml(connection);
+            //selectAllEmployees(connection, FETCH);
+            //selectAllCountriesAsXml(statements);
+            selectAllEmployeesAsXml(statements);
+            //selectAllManagersAsXml(statements);
+
+            // El informe de managers se genera fila a fila y se escribe directamente en un fichero
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(MANAGERS_XML))) {
+                writeManagersAsXml(statements, out);
+            }
 
         } catch (Exception e) {
             log.error("Error al tratar con la base de datos", e);
@@ -35,18 +59,30 @@ public class OracleApplication {
      * Statement es la forma más básica de ejecutar consultas a la base de datos.
      * Es la más insegura, ya que no se protege de ataques de inyección SQL.
      * No obstante, es útil para sentencias DDL.
+     * La tabla se recorre con un cursor (ver {@link Cursors}): las filas llegan en bloques de fetchSize
+     * según se leen, en lugar de cargar la tabla entera en memoria antes de devolver la primera.
+     * En Oracle el fetch size por defecto es 10 filas por viaje.
      * @param connection
+     * @param fetchSize - Filas que se traen del servidor en cada viaje
      * @throws SQLException
      */
-    private static void selectAllEmployees(Connection connection) throws SQLException {
-        Statement selectEmployees = connection.createStatement();
-        ResultSet employees = selectEmployees.executeQuery("select * from EMPLOYEES");
-
-        while (employees.next()) {
-            log.debug("Employee: {} {}",
-                    employees.getString("FIRST_NAME"),
-                    employees.getString("LAST_NAME"));
+    private static void selectAllEmployees(Connection connection, int fetchSize) throws SQLException {
+        long start = System.nanoTime();
+        long rows = 0;
+
+        try (Statement selectEmployees = Cursors.open(connection, fetchSize);
+             ResultSet employees = selectEmployees.executeQuery("select * from EMPLOYEES")) {
+
+            while (employees.next()) {
+                if (rows++ == 0) {
+                    log.debug("Primera fila en {} ms", (System.nanoTime() - start) / 1_000_000);
+                }
+                log.debug("Employee: {} {}",
+                        employees.getString("FIRST_NAME"),
+                        employees.getString("LAST_NAME"));
+            }
         }
+        log.info("Leídos {} empleados en {} ms", rows, (System.nanoTime() - start) / 1_000_000);
     }
 
     /**
@@ -54,11 +90,11 @@ public class OracleApplication {
      * Para usar SQL/XML, es necesario que la base de datos tenga instalado el módulo XDB.
      * En Oracle 19c, XDB viene instalado por defecto.
      * Ademas, se necesitan las dependencias que se encuentran en el pom.xml.
-     * @param connection
+     * @param statements
      * @throws SQLException
      */
-    private static void selectAllCountriesAsXml(Connection connection) throws SQLException {
-        PreparedStatement selectCountries = connection.prepareStatement("SELECT\n" +
+    private static void selectAllCountriesAsXml(StatementCache statements) throws SQLException {
+        PreparedStatement selectCountries = statements.get("countriesAsXml", "SELECT\n" +
                 "  XMLELEMENT(\"countryXml\",\n" +
                 "       XMLATTRIBUTES(\n" +
                 "         c.country_name AS \"name\",\n" +
@@ -69,14 +105,15 @@ public class OracleApplication {
                 "WHERE c.country_name LIKE ?");
         selectCountries.setString(1, "S%");
 
-        ResultSet countries = selectCountries.executeQuery();
-        while (countries.next()) {
-            log.debug("Country as XML: {}", countries.getString("CountryXml"));
+        try (ResultSet countries = selectCountries.executeQuery()) {
+            while (countries.next()) {
+                log.debug("Country as XML: {}", countries.getString("CountryXml"));
+            }
         }
     }
 
-    private static void selectAllEmployeesAsXml(Connection connection) throws SQLException {
-        PreparedStatement selectEmployees = connection.prepareStatement("SELECT\n" +
+    private static void selectAllEmployeesAsXml(StatementCache statements) throws SQLException {
+        PreparedStatement selectEmployees = statements.get("employeesAsXml", "SELECT\n" +
                 "  XMLELEMENT(\"empleados\",\n" +
                 "       XMLATTRIBUTES(\n" +
                 "         EM.FIRST_NAME AS \"nombre\",\n" +
@@ -86,14 +123,21 @@ public class OracleApplication {
                 "FROM  HR.EMPLOYEES EM\n" +
                 "JOIN HR.DEPARTMENTS DE ON EM.DEPARTMENT_ID = DE.DEPARTMENT_ID");
 
-        ResultSet employees = selectEmployees.executeQuery();
-        while (employees.next()) {
-            log.debug("Empleados XML: {}", employees.getString("EmpleadosXML"));
+        try (ResultSet employees = selectEmployees.executeQuery()) {
+            while (employees.next()) {
+                log.debug("Empleados XML: {}", employees.getString("EmpleadosXML"));
+            }
         }
     }
 
-    private static void selectAllManagersAsXml(Connection connection) throws SQLException {
-        PreparedStatement selectManagers = connection.prepareStatement("SELECT\n" +
+    /**
+     * Ejemplo de SQL/XML con XMLAGG: el servidor construye un único documento con todos los managers
+     * y se recupera entero como un String. Para muchos datos, ver {@link #writeManagersAsXml(StatementCache, OutputStream)}.
+     * @param statements
+     * @throws SQLException
+     */
+    private static void selectAllManagersAsXml(StatementCache statements) throws SQLException {
+        PreparedStatement selectManagers = statements.get("managersAsXml", "SELECT\n" +
                 "  XMLELEMENT(\"managers\",\n" +
                 "       XMLAGG(\n" +
                 "           XMLELEMENT(\"manager\", \n" +
@@ -113,9 +157,86 @@ public class OracleApplication {
                 "JOIN HR.JOBS JO ON EM.JOB_ID = JO.JOB_ID\n" +
                 "WHERE JO.JOB_TITLE LIKE '%Manager%'");
 
-        ResultSet managers = selectManagers.executeQuery();
-        while (managers.next()) {
-            log.debug("Managers XML: {}", managers.getString("ManagersXml"));
+        try (ResultSet managers = selectManagers.executeQuery()) {
+            while (managers.next()) {
+                log.debug("Managers XML: {}", managers.getString("ManagersXml"));
+            }
+        }
+    }
+
+    /**
+     * Mismo informe que {@link #selectAllManagersAsXml(StatementCache)}, pero generado en el cliente fila a fila con StAX.
+     * El servidor devuelve filas normales (sin XMLAGG), que se leen en bloques de {@link #FETCH},
+     * y cada manager se escribe en el OutputStream según llega.
+     * Así ni el servidor (espacio temporal del XMLAGG) ni el cliente (el documento entero en un String) dependen del tamaño del informe.
+     * @param statements
+     * @param out - Destino del documento, en UTF-8. No se cierra
+     * @throws SQLException
+     */
+    private static void writeManagersAsXml(StatementCache statements, OutputStream out) throws SQLException {
+        PreparedStatement selectManagers = statements.get("managers", "SELECT\n" +
+                "  EM.FIRST_NAME, EM.LAST_NAME, DE.DEPARTMENT_NAME, LO.CITY, CO.COUNTRY_NAME\n" +
+                "FROM HR.EMPLOYEES EM\n" +
+                "JOIN HR.DEPARTMENTS DE ON EM.DEPARTMENT_ID = DE.DEPARTMENT_ID\n" +
+                "JOIN HR.LOCATIONS LO ON DE.LOCATION_ID = LO.LOCATION_ID\n" +
+                "JOIN HR.COUNTRIES CO ON LO.COUNTRY_ID = CO.COUNTRY_ID\n" +
+                "JOIN HR.JOBS JO ON EM.JOB_ID = JO.JOB_ID\n" +
+                "WHERE JO.JOB_TITLE LIKE '%Manager%'");
+        selectManagers.setFetchSize(FETCH);
+
+        long managers = 0;
+        try (ResultSet rows = selectManagers.executeQuery()) {
+            // Implementación de StAX del JDK, aunque haya otras en el classpath (xmlparserv2)
+            XMLStreamWriter xml = XMLOutputFactory.newDefaultFactory().createXMLStreamWriter(out, "UTF-8");
+            try {
+                xml.writeStartDocument("UTF-8", "1.0");
+                xml.writeStartElement("managers");
+
+                while (rows.next()) {
+                    xml.writeStartElement("manager");
+                    xml.writeStartElement("nombreCompleto");
+                    forest(xml, "nombre", rows.getString(1));
+                    forest(xml, "apellido", rows.getString(2));
+                    xml.writeEndElement();
+                    element(xml, "department", rows.getString(3));
+                    element(xml, "city", rows.getString(4));
+                    element(xml, "country", rows.getString(5));
+                    xml.writeEndElement();
+                    managers++;
+                }
+
+                xml.writeEndElement();
+                xml.writeEndDocument();
+                xml.flush();
+            } finally {
+                // Se libera el escritor aunque falle la lectura. OJO! close() no cierra el OutputStream
+                xml.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new RuntimeException("Error al escribir el informe de managers", e);
+        }
+        log.debug("Informe de managers: {} managers", managers);
+    }
+
+    /**
+     * Escribe un elemento con texto. Como XMLELEMENT, si el valor es NULL se escribe el elemento vacío.
+     */
+    private static void element(XMLStreamWriter xml, String name, String value) throws XMLStreamException {
+        if (value == null) {
+            xml.writeEmptyElement(name);
+            return;
+        }
+        xml.writeStartElement(name);
+        xml.writeCharacters(value);
+        xml.writeEndElement();
+    }
+
+    /**
+     * Escribe un elemento con texto. Como XMLFOREST, si el valor es NULL no se escribe el elemento.
+     */
+    private static void forest(XMLStreamWriter xml, String name, String value) throws XMLStreamException {
+        if (value != null) {
+            element(xml, name, value);
         }
     }
 }
@@ -1,21 +1,26 @@
 package com.unir.app.write;
 
-import com.opencsv.CSVParserBuilder;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
-import com.opencsv.exceptions.CsvValidationException;
+import com.unir.config.ConnectionPool;
 import com.unir.config.MySqlConnector;
+import com.unir.intake.AdaptiveBatchSize;
+import com.unir.intake.BulkUpsertEngine;
+import com.unir.intake.CommitPolicy;
+import com.unir.intake.CsvLine;
+import com.unir.intake.CsvLineReader;
+import com.unir.intake.CsvPipeline;
+import com.unir.intake.CsvSorter;
+import com.unir.intake.CsvSource;
+import com.unir.intake.FastLoader;
+import com.unir.intake.IntakeCheckpoints;
+import com.unir.intake.Mappings;
+import com.unir.intake.ParallelLoader;
+import com.unir.intake.SqlDialect;
+import com.unir.intake.TableMapping;
 import com.unir.model.MySqlDepartment;
 import com.unir.model.MySqlDeptEmpt;
 import com.unir.model.MySqlEmployee;
 import lombok.extern.slf4j.Slf4j;
-import java.io.FileReader;
-import java.io.IOException;
 import java.sql.*;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
  * La version para Oracle seria muy similar a esta, cambiando únicamente el Driver y los datos de sentencias.
@@ -26,397 +31,279 @@ public class MySqlApplication {
 
     private static final String DATABASE = "employees";
 
-    public static void main(String[] args) {
+    // Tamaño de lote inicial, mínimo y máximo. El tamaño real se ajusta según el rendimiento medido
+    private static final int LOTE = 1000;
+    private static final int LOTE_MIN = 100;
+    private static final int LOTE_MAX = 20_000;
 
-        //Creamos conexion. No es necesario indicar puerto en host si usamos el default, 1521
-        //Try-with-resources. Se cierra la conexión automáticamente al salir del bloque try
-        try(Connection connection = new MySqlConnector("localhost", DATABASE).getConnection()) {
+    // Tiempo máximo que debería tardar un lote en milisegundos
+    private static final long LATENCIA_MAX = 500;
 
-            log.warn("Recuerda que el fichero unirEmployees.csv debe estar en la raíz del proyecto, es decir, en la carpeta {}"
-                    , System.getProperty("user.dir"));
-            log.info("Conexión establecida con la base de datos MySQL");
+    // Se hace commit cada 50.000 filas o cada 16 MB, lo que ocurra antes
+    private static final CommitPolicy COMMIT = new CommitPolicy(50_000, 16 * 1024 * 1024);
 
-            // Leemos los datos del fichero CSV
-            List<MySqlEmployee> employees = readData();
-            List<MySqlDepartment> departments = readDept();
-            List<MySqlDeptEmpt> deptEmpts = readDE();
+    // Número de bloques de registros leídos que pueden esperar en memoria a ser escritos
+    private static final int COLA = 16;
 
-            // Introducimos los datos en la base de datos
-            intake(connection, employees, departments, deptEmpts);
+    // Bytes que se acumulan en memoria antes de cada LOAD DATA en la carga rápida
+    private static final int BLOQUE_CARGA = 8 * 1024 * 1024;
 
+    public static void main(String[] args) {
 
+        log.warn("Recuerda que los ficheros CSV deben estar en la raíz del proyecto, es decir, en la carpeta {}"
+                , System.getProperty("user.dir"));
+
+        // Leemos los ficheros CSV y los introducimos en la base de datos a medida que se leen
+        // Con el argumento "parallel" cada tabla se reparte entre varios hilos, cada uno con su conexión
+        // Con el argumento "mapped" además cada hilo lee su propio trozo del fichero, con memoria mapeada
+        // Con el argumento "fast" se usa el cargador nativo de MySQL (LOAD DATA LOCAL INFILE)
+        // Con el argumento "sorted" los ficheros se ordenan por clave primaria antes de cargarlos
+        String mode = args.length > 0 ? args[0] : "";
+        try {
+            switch (mode) {
+                case "parallel" -> intakeParallel();
+                case "mapped" -> intakeMapped();
+                case "fast" -> intakeFast();
+                case "sorted" -> intakeSorted();
+                default -> {
+                    //Creamos conexion. No es necesario indicar puerto en host si usamos el default, 3306
+                    //Try-with-resources. Se cierra la conexión automáticamente al salir del bloque try
+                    try (Connection connection = new MySqlConnector("localhost", DATABASE).getConnection()) {
+                        log.info("Conexión establecida con la base de datos MySQL");
+                        intake(connection);
+                    }
+                }
+            }
         } catch (Exception e) {
             log.error("Error al tratar con la base de datos", e);
         }
     }
 
     /**
-     * Lee los datos del fichero CSV y los devuelve en una lista de empleados.
-     * El fichero CSV debe estar en la raíz del proyecto.
+     * Introduce los datos de los ficheros CSV en la base de datos.
+     * Si el registro ya existe, se actualiza.
+     * Si no existe, se inserta.
      *
-     * @return - Lista de empleados
+     * En lugar de consultar la existencia de cada registro (un SELECT COUNT(*) por fila),
+     * se usa una única sentencia de upsert por tabla (INSERT ... ON DUPLICATE KEY UPDATE) enviada en lotes.
+     * Los ficheros no se cargan enteros en memoria: cada linea se lee con un {@link CsvLineReader} y sus campos se enlazan
+     * directamente en la sentencia, sin crear un registro (MySqlEmployee...) ni Strings para los números y las fechas.
+     * El tamaño de lote de cada tabla se ajusta según el rendimiento, y se hace commit cada {@link #COMMIT} filas o bytes.
+     * Con cada commit se guarda un punto de control ({@link IntakeCheckpoints}): si la carga falla, se reanuda desde ahí.
+     * Los departamentos se cargan antes que dept_emp para que se respeten las claves foráneas.
+     *
+     * @param connection - Conexión a la base de datos
+     * @throws SQLException - Error al ejecutar la consulta
      */
-    private static List<MySqlEmployee> readData() {
-
-        // Try-with-resources. Se cierra el reader automáticamente al salir del bloque try
-        // CSVReader nos permite leer el fichero CSV linea a linea
-        try (CSVReader reader = new CSVReaderBuilder(
-                new FileReader("employees_continued.csv"))
-                .withCSVParser(
-                        new CSVParserBuilder()
-                                .withSeparator(',')
-                                .build())
-                .build()) {
-
-            // Creamos la lista de empleados y el formato de fecha
-            List<MySqlEmployee> employees = new LinkedList<>();
-            SimpleDateFormat format = new SimpleDateFormat("yyy-MM-dd");
-
-            // Saltamos la primera linea, que contiene los nombres de las columnas del CSV
-            reader.skip(1);
-            String[] nextLine;
-
-            // Leemos el fichero linea a linea
-            while((nextLine = reader.readNext()) != null) {
-
-                // Creamos el empleado y lo añadimos a la lista
-                MySqlEmployee employee = new MySqlEmployee(
-                        Integer.parseInt(nextLine[0]),
-                        nextLine[1],
-                        nextLine[2],
-                        nextLine[3],
-                        new Date(format.parse(nextLine[4]).getTime()),
-                        new Date(format.parse(nextLine[5]).getTime())
-                );
-                employees.add(employee);
-            }
-            return employees;
-        } catch (IOException e) {
-            log.error("Error al leer el fichero CSV", e);
-            throw new RuntimeException(e);
-        } catch (CsvValidationException | ParseException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    private static List<MySqlDepartment> readDept() {
-
-        // Try-with-resources. Se cierra el reader automáticamente al salir del bloque try
-        // CSVReader nos permite leer el fichero CSV linea a linea
-        try (CSVReader reader = new CSVReaderBuilder(
-                new FileReader("departments_continued.csv"))
-                .withCSVParser(
-                        new CSVParserBuilder()
-                                .withSeparator(',')
-                                .build())
-                .build()) {
-
-            // Creamos la lista de departamentos
-            List<MySqlDepartment> departments = new LinkedList<>();
-
-            // Saltamos la primera linea, que contiene los nombres de las columnas del CSV
-            reader.skip(1);
-            String[] nextLine;
-
-            // Leemos el fichero linea a linea
-            while((nextLine = reader.readNext()) != null) {
-
-                // Creamos el departamento y lo añadimos a la lista
-                MySqlDepartment department = new MySqlDepartment(
-                        nextLine[0],
-                        nextLine[1]
-                );
-                departments.add(department);
-            }
-            return departments;
-        } catch (IOException e) {
-            log.error("Error al leer el fichero CSV", e);
-            throw new RuntimeException(e);
-        } catch (CsvValidationException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    private static List<MySqlDeptEmpt> readDE() {
-
-        // Try-with-resources. Se cierra el reader automáticamente al salir del bloque try
-        // CSVReader nos permite leer el fichero CSV linea a linea
-        try (CSVReader reader = new CSVReaderBuilder(
-                new FileReader("employees_departments_related_dates.csv"))
-                .withCSVParser(
-                        new CSVParserBuilder()
-                                .withSeparator(',')
-                                .build())
-                .build()) {
-
-            // Creamos la lista de relaciones y el formato de fecha
-            List<MySqlDeptEmpt> deptEmpts = new LinkedList<>();
-            SimpleDateFormat format = new SimpleDateFormat("yyy-MM-dd");
-
-            // Saltamos la primera linea, que contiene los nombres de las columnas del CSV
-            reader.skip(1);
-            String[] nextLine;
-
-            // Leemos el fichero linea a linea
-            while((nextLine = reader.readNext()) != null) {
-
-                // Creamos la relación y la añadimos a la lista
-                MySqlDeptEmpt deptEmpt = new MySqlDeptEmpt(
-                        Integer.parseInt(nextLine[0]),
-                        nextLine[1],
-                        new Date(format.parse(nextLine[2]).getTime()),
-                        new Date(format.parse(nextLine[3]).getTime())
-                );
-                deptEmpts.add(deptEmpt);
-            }
-            return deptEmpts;
-        } catch (IOException e) {
-            log.error("Error al leer el fichero CSV", e);
-            throw new RuntimeException(e);
-        } catch (CsvValidationException | ParseException e) {
-            throw new RuntimeException(e);
-        }
+    private static void intake(Connection connection) throws SQLException {
+        intake(connection, CsvSource.EMPLOYEES.getFile(), CsvSource.DEPARTMENTS.getFile(), CsvSource.DEPT_EMP.getFile());
     }
 
     /**
-     * Introduce los datos en la base de datos.
-     * Si el empleado ya existe, se actualiza.
-     * Si no existe, se inserta.
+     * Introduce los datos de unos ficheros CSV concretos en la base de datos, como {@link #intake(Connection)}.
      *
-     * Toma como referencia el campo emp_no para determinar si el empleado existe o no.
      * @param connection - Conexión a la base de datos
-     * @param employees - Lista de empleados
+     * @param employees - Fichero de empleados
+     * @param departments - Fichero de departamentos
+     * @param deptEmp - Fichero de empleados por departamento
      * @throws SQLException - Error al ejecutar la consulta
      */
-    private static void intake(Connection connection, List<MySqlEmployee> employees, List<MySqlDepartment> departments, List<MySqlDeptEmpt> deptEmpts) throws SQLException {
-
-        String selectSql = "SELECT COUNT(*) FROM employees WHERE emp_no = ?";
-        String insertSql = "INSERT INTO employees (emp_no, first_name, last_name, gender, hire_date, birth_date) "
-                + "VALUES (?, ?, ?, ?, ?, ?)";
-        String updateSql = "UPDATE employees SET first_name = ?, last_name = ?, gender = ?, hire_date = ?, birth_date = ? WHERE emp_no = ?";
-
-        String selectSqlDept = "SELECT COUNT(*) FROM departments WHERE dept_no = ?";
-        String insertSqlDept = "INSERT INTO departments (dept_no, dept_name) "
-                + "VALUES (?, ?)";
-        String updateSqlDept = "UPDATE departments SET dept_name = ? WHERE dept_no = ?";
-
-        String selectSqlDE = "SELECT COUNT(*) FROM dept_emp WHERE (emp_no = ? AND dept_no = ?)";
-        String insertSqlDE = "INSERT INTO dept_emp (emp_no, dept_no, from_date, to_date) "
-                + "VALUES (?, ?, ?, ?)";
-        String updateSqlDE = "UPDATE dept_emp SET from_date = ?, to_date = ? WHERE (emp_no = ? AND dept_no = ?)";
-
-        int lote = 5;
-        int contador = 0;
-
-        // Preparamos las consultas, una unica vez para poder reutilizarlas en el batch
-        PreparedStatement insertStatement = connection.prepareStatement(insertSql);
-        PreparedStatement updateStatement = connection.prepareStatement(updateSql);
-
-        PreparedStatement insertStatementDept = connection.prepareStatement(insertSqlDept);
-        PreparedStatement updateStatementDept = connection.prepareStatement(updateSqlDept);
-
-        PreparedStatement insertStatementDE = connection.prepareStatement(insertSqlDE);
-        PreparedStatement updateStatementDE = connection.prepareStatement(updateSqlDE);
-
-        // Desactivamos el autocommit para poder ejecutar el batch y hacer commit al final
-        connection.setAutoCommit(false);
-
-        for (MySqlEmployee employee : employees) {
-
-            // Comprobamos si el empleado existe
-            PreparedStatement selectStatement = connection.prepareStatement(selectSql);
-            selectStatement.setInt(1, employee.getEmployeeId()); // Código del empleado
-            ResultSet resultSet = selectStatement.executeQuery();
-            resultSet.next(); // Nos movemos a la primera fila
-            int rowCount = resultSet.getInt(1);
-
-            // Si existe, actualizamos. Si no, insertamos
-            if(rowCount > 0) {
-                fillUpdateStatement(updateStatement, employee);
-                updateStatement.addBatch();
-            } else {
-                fillInsertStatement(insertStatement, employee);
-                insertStatement.addBatch();
+    private static void intake(Connection connection, String employees, String departments, String deptEmp) throws SQLException {
+
+        // La tabla de control se crea antes de desactivar el autocommit: CREATE TABLE hace commit implícito
+        try (IntakeCheckpoints checkpoints = new IntakeCheckpoints(connection)) {
+
+            // Desactivamos el autocommit para poder ejecutar los batch y hacer commit por bloques
+            connection.setAutoCommit(false);
+
+            try {
+                intake(connection, checkpoints, employees, Mappings.EMPLOYEES_CSV);
+                intake(connection, checkpoints, departments, Mappings.DEPARTMENTS_CSV);
+                intake(connection, checkpoints, deptEmp, Mappings.DEPT_EMP_CSV);
+
+                /**
+                 * Para probar en modo DEBUG
+                 * Hasta que no se hace commit, los cambios no se reflejan en la base de datos
+                 * Es decir, si alguien consulta la base de datos antes de que se ejecute connection.commit(), no verá los cambios
+                 * Haz la prueba. Modifica el archivo CSV e incluye un nuevo empleado. Copia la ultima linea y cambia el nombre del empleado (pon algo que sea unico). Pon emp_no 99
+                 * Pon un breakpoint en connection.commit() y ejecuta el programa en modo debug.
+                 * Abre DataGrip u otro cliente de base de datos y ejecuta la consulta SELECT * FROM employees. Verás que el nuevo empleado no aparece.
+                 *
+                 * Descomenta el siguiente codigo para probarlo.
+                 * Veras que, tras ejecutarse los batch, el empleado con emp_no 99 si existe en esta conexion contra la DB.
+                 * Sin embargo, si ejecutas la consulta SELECT * FROM employees en DataGrip, no verás a ese empleado aun.
+                 */
+                //PreparedStatement selectStatement = connection.prepareStatement("SELECT COUNT(*) FROM employees WHERE emp_no = ?");
+                //selectStatement.setInt(1, 99); // Código del empleado
+                //ResultSet resultSet = selectStatement.executeQuery();
+                //resultSet.next(); // Nos movemos a la primera fila
+                //int rowCount = resultSet.getInt(1);
+                //log.debug("El empleado con emp_no 99 existe en esta conexion contra la DB? {}", rowCount > 0);
+
+                // Carga completa: la siguiente vez se empieza desde el principio
+                checkpoints.clear(employees);
+                checkpoints.clear(departments);
+                checkpoints.clear(deptEmp);
+                connection.commit();
+
+            } catch (SQLException | RuntimeException e) {
+                // Se descarta lo que no se ha confirmado. Lo confirmado queda registrado en los puntos de control
+                connection.rollback();
+                log.error("Carga interrumpida. Al volver a lanzarla se continuará desde el último commit");
+                throw e;
             }
 
-            // Ejecutamos el batch cada lote de registros
-            if (++contador % lote == 0) {
-                updateStatement.executeBatch();
-                insertStatement.executeBatch();
-            }
+            connection.setAutoCommit(true);
         }
-
-        for (MySqlDepartment department : departments) {
-
-            // Comprobamos si el departamento existe
-            PreparedStatement selectStatementDept = connection.prepareStatement(selectSqlDept);
-            selectStatementDept.setString(1, department.getDptNo()); // Código del departamento
-            ResultSet resultSet = selectStatementDept.executeQuery();
-            resultSet.next(); // Nos movemos a la primera fila
-            int rowCount = resultSet.getInt(1);
-
-            // Si existe, actualizamos. Si no, insertamos
-            if(rowCount > 0) {
-                fillUpdateStatementDept(updateStatementDept, department);
-                updateStatementDept.addBatch();
-            } else {
-                fillInsertStatementDept(insertStatementDept, department);
-                insertStatementDept.addBatch();
-            }
-
-            // Ejecutamos el batch cada lote de registros
-            if (++contador % lote == 0) {
-                updateStatementDept.executeBatch();
-                insertStatementDept.executeBatch();
-            }
-        }
-
-        for (MySqlDeptEmpt deptEmpt : deptEmpts) {
-
-            // Comprobamos si la relación existe
-            PreparedStatement selectStatementDE = connection.prepareStatement(selectSqlDE);
-            selectStatementDE.setInt(1, deptEmpt.getEmpNo()); // Código del empleado
-            selectStatementDE.setString(2, deptEmpt.getDeptNo()); // Código del departamento
-            ResultSet resultSet = selectStatementDE.executeQuery();
-            resultSet.next(); // Nos movemos a la primera fila
-            int rowCount = resultSet.getInt(1);
-
-            // Si existe, actualizamos. Si no, insertamos
-            if(rowCount > 0) {
-                fillUpdateStatementDE(updateStatementDE, deptEmpt);
-                updateStatementDE.addBatch();
-            } else {
-                fillInsertStatementDE(insertStatementDE, deptEmpt);
-                insertStatementDE.addBatch();
-            }
-
-            // Ejecutamos el batch cada lote de registros
-            if (++contador % lote == 0) {
-                updateStatementDE.executeBatch();
-                insertStatementDE.executeBatch();
-            }
-        }
-
-        // Ejecutamos el batch final
-        insertStatement.executeBatch();
-        updateStatement.executeBatch();
-
-        insertStatementDept.executeBatch();
-        updateStatementDept.executeBatch();
-
-        insertStatementDE.executeBatch();
-        updateStatementDE.executeBatch();
-
-        /**
-         * Para probar en modo DEBUG
-         * Hasta que no se hace commit, los cambios no se reflejan en la base de datos
-         * Es decir, si alguien consulta la base de datos antes de que se ejecute connection.commit(), no verá los cambios
-         * Haz la prueba. Modifica el archivo CSV e incluye un nuevo empleado. Copia la ultima linea y cambia el nombre del empleado (pon algo que sea unico). Pon emp_no 99
-         * Pon un breakpoint en connection.commit() y ejecuta el programa en modo debug.
-         * Abre DataGrip u otro cliente de base de datos y ejecuta la consulta SELECT * FROM employees. Verás que el nuevo empleado no aparece.
-         *
-         * Descomenta el siguiente codigo para probarlo.
-         * Veras que, tras ejecutarse los batch, el empleado con emp_no 99 si existe en esta conexion contra la DB.
-         * Sin embargo, si ejecutas la consulta SELECT * FROM employees en DataGrip, no verás a ese empleado aun.
-         */
-        //PreparedStatement selectStatement = connection.prepareStatement(selectSql);
-        //selectStatement.setInt(1, 99); // Código del empleado
-        //ResultSet resultSet = selectStatement.executeQuery();
-        //resultSet.next(); // Nos movemos a la primera fila
-        //int rowCount = resultSet.getInt(1);
-        //log.debug("El empleado con emp_no 99 existe en esta conexion contra la DB? {}", rowCount > 0);
-
-
-        // Hacemos commit y volvemos a activar el autocommit
-        connection.commit();
-        connection.setAutoCommit(true);
     }
 
     /**
-     * Rellena los parámetros de un PreparedStatement para una consulta INSERT.
+     * Carga un fichero CSV desde su último punto de control.
+     * Cada commit intermedio guarda, en la misma transacción, cuántas lineas del fichero están ya cargadas.
+     * Al terminar el fichero se hace commit, de modo que un fallo en el siguiente fichero no obliga a repetir este.
      *
-     * @param statement - PreparedStatement
-     * @param employee - Empleado
-     * @throws SQLException - Error al rellenar los parámetros
+     * @param connection - Conexión a la base de datos, sin autocommit
+     * @param checkpoints - Puntos de control
+     * @param file - Ruta del fichero CSV
+     * @param mapping - Tabla destino
+     * @throws SQLException - Error al ejecutar la consulta
      */
-    private static void fillInsertStatement(PreparedStatement statement, MySqlEmployee employee) throws SQLException {
-        statement.setInt(1, employee.getEmployeeId());
-        statement.setString(2, employee.getFirstName());
-        statement.setString(3, employee.getLastName());
-        statement.setString(4, employee.getGender());
-        statement.setDate(5, employee.getHireDate());
-        statement.setDate(6, employee.getBirthDate());
+    private static void intake(Connection connection, IntakeCheckpoints checkpoints, String file,
+                               TableMapping<CsvLine> mapping) throws SQLException {
 
+        long done = checkpoints.resume(file);
+
+        // Cada motor prepara su sentencia una unica vez y la cierra al salir del bloque try
+        try (BulkUpsertEngine<CsvLine> engine = engine(connection, mapping)) {
+            engine.setBeforeCommit(rows -> checkpoints.save(file, done + rows));
+            CsvLineReader.forEach(file, done, engine::add);
+            engine.flush();
+            checkpoints.save(file, done + engine.getTotal());
+        }
+        connection.commit();
     }
 
     /**
-     * Rellena los parámetros de un PreparedStatement para una consulta INSERT.
+     * Introduce los datos de los ficheros CSV en la base de datos en el orden de su clave primaria.
+     * Los ficheros de empleados y de dept_emp se ordenan antes (ver {@link CsvSorter}), de modo que las filas entran
+     * siempre al final del índice agrupado de InnoDB, sin dividir páginas. El de departamentos es pequeño y se carga tal cual.
+     * Después la carga es la misma que en {@link #intake(Connection)}, con sus lotes y puntos de control.
      *
-     * @param statement - PreparedStatement
-     * @param department - Departamento
-     * @throws SQLException - Error al rellenar los parámetros
+     * @throws SQLException - Error al ejecutar la consulta
      */
-    private static void fillInsertStatementDept(PreparedStatement statement, MySqlDepartment department) throws SQLException {
-        statement.setString(1, department.getDptNo());
-        statement.setString(2, department.getDptName());
+    private static void intakeSorted() throws SQLException {
 
+        // Los campos clave están al principio de cada linea, en el mismo orden que en el mapeo
+        String employees = new CsvSorter(Mappings.EMPLOYEES_CSV.getKeyColumns().size()).sort(CsvSource.EMPLOYEES.getFile());
+        String deptEmp = new CsvSorter(Mappings.DEPT_EMP_CSV.getKeyColumns().size()).sort(CsvSource.DEPT_EMP.getFile());
+
+        try (Connection connection = new MySqlConnector("localhost", DATABASE).getConnection()) {
+            intake(connection, employees, CsvSource.DEPARTMENTS.getFile(), deptEmp);
+        }
     }
 
     /**
-     * Rellena los parámetros de un PreparedStatement para una consulta INSERT.
-     *
-     * @param statement - PreparedStatement
-     * @param deptEmpt - DepartamentoEmplrado
-     * @throws SQLException - Error al rellenar los parámetros
+     * Crea el motor de upsert de una tabla, con su propio tamaño de lote adaptativo.
+     * @param connection - Conexión a la base de datos
+     * @param mapping - Tabla destino
+     * @return - Motor de upsert
+     * @throws SQLException - Error al preparar la sentencia
      */
-    private static void fillInsertStatementDE(PreparedStatement statement, MySqlDeptEmpt deptEmpt) throws SQLException {
-        statement.setInt(1, deptEmpt.getEmpNo());
-        statement.setString(2, deptEmpt.getDeptNo());
-        statement.setDate(3, deptEmpt.getFromDate());
-        statement.setDate(4, deptEmpt.getToDate());
+    private static <T> BulkUpsertEngine<T> engine(Connection connection, TableMapping<T> mapping) throws SQLException {
+        return new BulkUpsertEngine<>(connection, SqlDialect.MYSQL, mapping, batchSize(), COMMIT);
+    }
 
+    private static AdaptiveBatchSize batchSize() {
+        return new AdaptiveBatchSize(LOTE, LOTE_MIN, LOTE_MAX, LATENCIA_MAX);
     }
 
     /**
-     * Rellena los parámetros de un PreparedStatement para una consulta UPDATE.
+     * Introduce los datos de los ficheros CSV en la base de datos usando varios hilos.
+     * Cada tabla se reparte por rangos de clave entre tantas particiones como procesadores,
+     * y cada partición se escribe con su propia conexión.
+     *
+     * Las tablas padre (employees y departments) terminan de cargarse antes de empezar con dept_emp,
+     * para que se respeten las claves foráneas.
      *
-     * @param statement - PreparedStatement
-     * @param employee - Empleado
-     * @throws SQLException - Error al rellenar los parámetros
+     * @throws SQLException - Error al ejecutar la consulta
      */
-    private static void fillUpdateStatement(PreparedStatement statement, MySqlEmployee employee) throws SQLException {
-        statement.setString(1, employee.getFirstName());
-        statement.setString(2, employee.getLastName());
-        statement.setString(3, employee.getGender());
-        statement.setDate(4, employee.getHireDate());
-        statement.setDate(5, employee.getBirthDate());
-        statement.setInt(6, employee.getEmployeeId());
+    private static void intakeParallel() throws SQLException {
+
+        ParallelLoader loader = new ParallelLoader(
+                () -> new MySqlConnector("localhost", DATABASE).getConnection(),
+                SqlDialect.MYSQL,
+                Runtime.getRuntime().availableProcessors(),
+                MySqlApplication::batchSize,
+                COMMIT,
+                COLA);
+
+        loader.load(CsvSource.EMPLOYEES, Mappings.EMPLOYEES, ParallelLoader.byRange(MySqlEmployee::getEmployeeId));
+        loader.load(CsvSource.DEPARTMENTS, Mappings.DEPARTMENTS, ParallelLoader.byHash(MySqlDepartment::getDptNo));
+        loader.load(CsvSource.DEPT_EMP, Mappings.DEPT_EMP, ParallelLoader.byRange(MySqlDeptEmpt::getEmpNo));
     }
 
     /**
-     * Rellena los parámetros de un PreparedStatement para una consulta UPDATE.
+     * Introduce los datos de los ficheros CSV en la base de datos usando varios hilos, también para la lectura.
+     * Cada fichero se mapea en memoria y se divide en tantos trozos como procesadores.
+     * Cada hilo lee su trozo, decodifica los bytes y escribe las lineas con su propia conexión.
+     * Pensado para ficheros de varios GB, en los que leer con un único Reader sería el cuello de botella.
+     *
+     * Como en {@link #intakeParallel()}, las tablas padre se cargan antes que dept_emp.
      *
-     * @param statement - PreparedStatement
-     * @param department - Departamento
-     * @throws SQLException - Error al rellenar los parámetros
+     * @throws SQLException - Error al ejecutar la consulta
      */
-    private static void fillUpdateStatementDept(PreparedStatement statement, MySqlDepartment department) throws SQLException {
-        statement.setString(1, department.getDptName());
-        statement.setString(2, department.getDptNo());
+    private static void intakeMapped() throws SQLException {
+
+        ParallelLoader loader = new ParallelLoader(
+                () -> new MySqlConnector("localhost", DATABASE).getConnection(),
+                SqlDialect.MYSQL,
+                Runtime.getRuntime().availableProcessors(),
+                MySqlApplication::batchSize,
+                COMMIT,
+                COLA);
+
+        loader.loadMapped(CsvSource.EMPLOYEES.getFile(), Mappings.EMPLOYEES_CSV);
+        loader.loadMapped(CsvSource.DEPARTMENTS.getFile(), Mappings.DEPARTMENTS_CSV);
+        loader.loadMapped(CsvSource.DEPT_EMP.getFile(), Mappings.DEPT_EMP_CSV);
     }
 
     /**
-     * Rellena los parámetros de un PreparedStatement para una consulta UPDATE.
+     * Introduce los datos de los ficheros CSV en la base de datos con LOAD DATA LOCAL INFILE.
+     * Es el modo más rápido para ficheros muy grandes: los datos viajan en bloques de {@link #BLOQUE_CARGA} bytes
+     * y es el cargador nativo de MySQL el que los procesa (ver {@link FastLoader}).
      *
-     * @param statement - PreparedStatement
-     * @param deptEmpt - DepartamentoEmpleado
-     * @throws SQLException - Error al rellenar los parámetros
+     * Si el driver o el servidor no permiten LOAD DATA LOCAL INFILE, se usa la carga por lotes.
+     *
+     * @throws SQLException - Error al ejecutar la consulta
      */
-    private static void fillUpdateStatementDE(PreparedStatement statement, MySqlDeptEmpt deptEmpt) throws SQLException {
-        statement.setDate(1, deptEmpt.getFromDate());
-        statement.setDate(2, deptEmpt.getToDate());
-        statement.setInt(3, deptEmpt.getEmpNo());
-        statement.setString(4, deptEmpt.getDeptNo());
+    private static void intakeFast() throws SQLException {
+
+        // Las conexiones con LOAD DATA LOCAL INFILE habilitado salen de un pool propio
+        try (Connection connection = ConnectionPool.mysqlBulkLoad("localhost", DATABASE).getConnection()) {
+
+            if (!FastLoader.isAvailable(connection)) {
+                log.warn("LOAD DATA LOCAL INFILE no está disponible. Se usa la carga por lotes");
+                intake(connection);
+                return;
+            }
+
+            connection.setAutoCommit(false);
+
+            try (FastLoader<MySqlEmployee> loader = new FastLoader<>(connection, Mappings.EMPLOYEES, Mappings.EMPLOYEES_FORMAT, BLOQUE_CARGA)) {
+                new CsvPipeline<>(CsvSource.EMPLOYEES, COLA).run(loader::add);
+            }
+
+            try (FastLoader<MySqlDepartment> loader = new FastLoader<>(connection, Mappings.DEPARTMENTS, Mappings.DEPARTMENTS_FORMAT, BLOQUE_CARGA)) {
+                new CsvPipeline<>(CsvSource.DEPARTMENTS, COLA).run(loader::add);
+            }
+
+            try (FastLoader<MySqlDeptEmpt> loader = new FastLoader<>(connection, Mappings.DEPT_EMP, Mappings.DEPT_EMP_FORMAT, BLOQUE_CARGA)) {
+                new CsvPipeline<>(CsvSource.DEPT_EMP, COLA).run(loader::add);
+            }
+
+            connection.commit();
+            connection.setAutoCommit(true);
+        }
     }
 
     /**
@@ -1,6 +1,8 @@
 package com.unir.app.write;
 
 import com.unir.config.OracleDatabaseConnector;
+import com.unir.intake.OracleReferenceSync;
+import com.unir.jdbc.StatementCache;
 import com.unir.model.OracleCountry;
 import com.unir.model.OracleRegion;
 import lombok.extern.slf4j.Slf4j;
@@ -9,6 +11,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * La version para MySQL seria muy similar a esta, cambiando únicamente el Driver.
@@ -18,11 +21,16 @@ public class OracleApplication {
 
     private static final String SERIVCE_NAME = "orcl";
 
+    // Sentencias preparadas que se mantienen abiertas por conexión
+    private static final int SENTENCIAS = 32;
+
     public static void main(String[] args) {
 
         //Creamos conexion. No es necesario indicar puerto en host si usamos el default, 1521
         //Try-with-resources. Se cierra la conexión automáticamente al salir del bloque try
-        try(Connection connection = new OracleDatabaseConnector("localhost", SERIVCE_NAME).getConnection()) {
+        //El registro de sentencias prepara cada consulta una sola vez y las cierra todas al salir
+        try(Connection connection = new OracleDatabaseConnector("localhost", SERIVCE_NAME).getConnection();
+            StatementCache statements = new StatementCache(connection, SENTENCIAS)) {
 
             /*log.info("Conexión establecida con la base de datos Oracle");
             OracleCountry spain = new OracleCountry("ES", 1, "Spain");
@@ -30,7 +38,18 @@ public class OracleApplication {
 
             log.info("Conexión establecida con la base de datos Oracle");
             OracleRegion oceania = new OracleRegion(5, "Oceania");
-            upsert(connection, oceania);
+            upsert(statements, oceania);
+
+            // Para muchas filas, una llamada por lote en lugar de dos sentencias por fila
+            try (OracleReferenceSync sync = new OracleReferenceSync(connection)) {
+                List<OracleReferenceSync.Outcome> regions = sync.upsertRegions(List.of(
+                        new OracleRegion(5, "Oceania"),
+                        new OracleRegion(6, "Antarctica")));
+                List<OracleReferenceSync.Outcome> countries = sync.upsertCountries(List.of(
+                        new OracleCountry("ES", 1, "Spain"),
+                        new OracleCountry("NZ", 5, "New Zealand")));
+                log.info("Regiones: {}. Países: {}", regions, countries);
+            }
 
         } catch (Exception e) {
             log.error("Error al tratar con la base de datos", e);
@@ -80,27 +99,38 @@ public class OracleApplication {
         }
     }*/
 
-    public static void upsert(Connection connection, OracleRegion region) throws SQLException {
+    /**
+     * Función que nos permite insertar o actualizar una región en la base de datos.
+     * Las sentencias se obtienen del registro, de modo que solo se preparan la primera vez.
+     * Son dos viajes a la base de datos por región: para muchas regiones, ver {@link OracleReferenceSync}.
+     *
+     * @param statements - Registro de sentencias de la conexión.
+     * @param region - Región a insertar o actualizar.
+     * @throws SQLException - Si ocurre algún error al ejecutar la consulta.
+     */
+    public static void upsert(StatementCache statements, OracleRegion region) throws SQLException {
 
         String selectSql = "SELECT COUNT(*) FROM regions WHERE region_id = ?";
         String updateSql = "UPDATE regions SET region_name = ? WHERE region_id = ?";
         String insertSql = "INSERT INTO regions (region_id, region_name) VALUES (?, ?)";
 
-        PreparedStatement selectStatement = connection.prepareStatement(selectSql);
+        PreparedStatement selectStatement = statements.get("selectRegion", selectSql);
         selectStatement.setInt(1, region.getRegionId()); // Código de la región
-        ResultSet resultSet = selectStatement.executeQuery();
-        resultSet.next(); // Nos movemos a la primera fila
-        int rowCount = resultSet.getInt(1);
+        int rowCount;
+        try (ResultSet resultSet = selectStatement.executeQuery()) {
+            resultSet.next(); // Nos movemos a la primera fila
+            rowCount = resultSet.getInt(1);
+        }
 
         if(rowCount > 0) {
-            PreparedStatement updateStatement = connection.prepareStatement(updateSql);
+            PreparedStatement updateStatement = statements.get("updateRegion", updateSql);
             updateStatement.setString(1, region.getRegionName()); // Nuevo nombre de la región
             updateStatement.setInt(2, region.getRegionId()); // Nuevo codigo de región
             int filasActualizadas = updateStatement.executeUpdate();
             log.debug("Filas Actualizadas: {}", filasActualizadas);
 
         } else {
-            PreparedStatement insertStatement = connection.prepareStatement(insertSql);
+            PreparedStatement insertStatement = statements.get("insertRegion", insertSql);
             insertStatement.setInt(1, region.getRegionId()); // Nuevo código de la región
             insertStatement.setString(2, region.getRegionName()); // Nuevo nombre de la región
             int filasInsertadas = insertStatement.executeUpdate();
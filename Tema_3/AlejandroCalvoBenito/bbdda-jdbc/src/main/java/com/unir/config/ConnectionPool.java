@@ -0,0 +1,186 @@
+package com.unir.config;
+
+import com.unir.jdbc.InstrumentedConnection;
+import com.unir.jdbc.SqlStats;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool de conexiones compartido por todas las aplicaciones (HikariCP).
+ * Abrir una conexión con DriverManager cuesta una conexión TCP y una autenticación completas.
+ * Con el pool las conexiones se abren una vez y se reutilizan: al cerrar una conexión obtenida del pool, vuelve al pool.
+ *
+ * Hay un único pool por URL, de modo que varios MySqlConnector/OracleDatabaseConnector (o varios hilos) lo comparten.
+ * Además de lo que ofrece HikariCP (tamaño mínimo y máximo, expulsión de conexiones ociosas, validación y detección de fugas),
+ * se mide cuánto tiempo se espera para obtener una conexión.
+ *
+ * Con -Dsqlstats=true las conexiones se entregan instrumentadas (ver {@link InstrumentedConnection}):
+ * llamadas, filas y latencias de cada sentencia, y aviso de posibles N+1. El resumen sale en el log al terminar.
+ */
+@Slf4j
+public class ConnectionPool implements AutoCloseable {
+
+    // Conexiones que se mantienen abiertas aunque no se usen
+    private static final int MIN_CONEXIONES = 2;
+
+    // Conexiones máximas. La carga en paralelo usa una por procesador además de la principal
+    private static final int MAX_CONEXIONES = Math.max(10, Runtime.getRuntime().availableProcessors() * 2);
+
+    // Tiempo tras el que se cierra una conexión ociosa (por encima del mínimo)
+    private static final long OCIOSA_MS = 60_000;
+
+    // Tiempo máximo esperando una conexión libre antes de dar error
+    private static final long ESPERA_MAX_MS = 30_000;
+
+    // Si una conexión no se devuelve en este tiempo, se avisa en el log de una posible fuga
+    private static final long FUGA_MS = 60_000;
+
+    // Medir las sentencias de las conexiones entregadas (ver SqlStats)
+    private static final boolean INSTRUMENTAR = Boolean.getBoolean("sqlstats");
+
+    private static final Map<String, ConnectionPool> POOLS = new ConcurrentHashMap<>();
+
+    private final HikariDataSource dataSource;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private ConnectionPool(String name, String url, String user, String password, Map<String, Object> driverProperties) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setJdbcUrl(url);
+        config.setUsername(user);
+        config.setPassword(password);
+        config.setMinimumIdle(MIN_CONEXIONES);
+        config.setMaximumPoolSize(MAX_CONEXIONES);
+        config.setIdleTimeout(OCIOSA_MS);
+        config.setConnectionTimeout(ESPERA_MAX_MS);
+        config.setLeakDetectionThreshold(FUGA_MS);
+        driverProperties.forEach(config::addDataSourceProperty);
+        this.dataSource = new HikariDataSource(config);
+    }
+
+    /**
+     * Pool de conexiones a MySQL. Se crea la primera vez que se pide.
+     * @param host - Host (y puerto) de la base de datos
+     * @param database - Base de datos
+     * @return - Pool compartido
+     */
+    public static ConnectionPool mysql(String host, String database) {
+        //rewriteBatchedStatements agrupa los batch en sentencias multi-fila, un único viaje por lote
+        return mysqlPool("mysql-" + database, "jdbc:mysql://" + host + "/" + database + "?rewriteBatchedStatements=true");
+    }
+
+    /**
+     * Pool de conexiones a MySQL que permite LOAD DATA LOCAL INFILE.
+     * Es un pool aparte: con allowLoadLocalInfile el servidor puede pedir ficheros al cliente,
+     * así que solo se activa en las conexiones que hacen carga rápida.
+     * @param host - Host (y puerto) de la base de datos
+     * @param database - Base de datos
+     * @return - Pool compartido
+     */
+    public static ConnectionPool mysqlBulkLoad(String host, String database) {
+        return mysqlPool("mysql-bulk-" + database,
+                "jdbc:mysql://" + host + "/" + database + "?rewriteBatchedStatements=true&allowLoadLocalInfile=true");
+    }
+
+    private static ConnectionPool mysqlPool(String name, String url) {
+        return POOLS.computeIfAbsent(url, key -> create(name, key,
+                System.getenv("MYSQL_USER"), System.getenv("MYSQL_PASSWORD"),
+                // Sentencias preparadas en el servidor y cacheadas por el driver en cada conexión física.
+                // Al reutilizar la conexión del pool, las consultas repetidas no se vuelven a analizar ni planificar.
+                // useCursorFetch: las sentencias con fetch size usan un cursor en el servidor (ver Cursors)
+                Map.of("useServerPrepStmts", "true",
+                        "cachePrepStmts", "true",
+                        "prepStmtCacheSize", "250",
+                        "prepStmtCacheSqlLimit", "2048",
+                        "useCursorFetch", "true")));
+    }
+
+    /**
+     * Pool de conexiones a Oracle. Se crea la primera vez que se pide.
+     * @param host - Host (y puerto) de la base de datos
+     * @param database - Nombre del servicio
+     * @return - Pool compartido
+     */
+    public static ConnectionPool oracle(String host, String database) {
+        String url = "jdbc:oracle:thin:@//" + host + "/" + database;
+        return POOLS.computeIfAbsent(url, key -> create("oracle-" + database, key,
+                System.getenv("ORACLE_USER"), System.getenv("ORACLE_PASSWORD"),
+                // Caché implícita de sentencias del driver en cada conexión física
+                Map.of("oracle.jdbc.implicitStatementCacheSize", "50")));
+    }
+
+    private static ConnectionPool create(String name, String url, String user, String password, Map<String, Object> driverProperties) {
+        ConnectionPool pool = new ConnectionPool(name, url, user, password, driverProperties);
+        // Al terminar la aplicación se muestran las métricas y se cierran las conexiones
+        Runtime.getRuntime().addShutdownHook(new Thread(pool::close, name + "-shutdown"));
+        log.info("Pool de conexiones {} creado ({} - {} conexiones)", name, MIN_CONEXIONES, MAX_CONEXIONES);
+        return pool;
+    }
+
+    /**
+     * Obtiene una conexión del pool. Hay que cerrarla para devolverla (try-with-resources).
+     * @return - Conexión
+     * @throws SQLException - Error al conectar o tiempo de espera agotado
+     */
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = dataSource.getConnection();
+        long waited = System.nanoTime() - start;
+
+        acquired.increment();
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        return INSTRUMENTAR ? InstrumentedConnection.wrap(connection, SqlStats.shared()) : connection;
+    }
+
+    /**
+     * @return - El pool como DataSource estándar, para librerías que lo necesiten
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * @return - Tiempo medio de espera para obtener una conexión, en milisegundos
+     */
+    public double getAvgWaitMillis() {
+        long count = acquired.sum();
+        return count == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / count;
+    }
+
+    /**
+     * @return - Tiempo máximo de espera para obtener una conexión, en milisegundos
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return String.format("%s: %d conexiones entregadas, espera media %.2f ms, máxima %.2f ms (activas %d, ociosas %d, en espera %d)",
+                dataSource.getPoolName(), acquired.sum(), getAvgWaitMillis(), getMaxWaitMillis(),
+                pool.getActiveConnections(), pool.getIdleConnections(), pool.getThreadsAwaitingConnection());
+    }
+
+    @Override
+    public void close() {
+        if (!dataSource.isClosed()) {
+            log.info("{}", this);
+            dataSource.close();
+        }
+    }
+}
@@ -4,7 +4,6 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 
@@ -14,18 +13,15 @@ public class MySqlConnector {
     private final Connection connection;
 
     /**
-     * Constructor de la clase. Se conecta a la base de datos.
+     * Constructor de la clase. Obtiene una conexión del pool de la base de datos.
      * @param host
      * @param database
      */
     public MySqlConnector(String host, String database) {
 
         try {
-            //Creamos la conexión a la base de datos
-            this.connection = DriverManager.getConnection(
-                    "jdbc:mysql://" + host + "/" + database,
-                    System.getenv("MYSQL_USER"),
-                    System.getenv("MYSQL_PASSWORD"));
+            //Obtenemos la conexión del pool compartido. Al cerrarla vuelve al pool en lugar de cerrarse
+            this.connection = ConnectionPool.mysql(host, database).getConnection();
 
         } catch (SQLException e) {
             log.error("Error al conectar con la base de datos", e);
@@ -4,7 +4,6 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 
@@ -15,18 +14,15 @@ public class OracleDatabaseConnector {
     private final Connection connection;
 
     /**
-     * Constructor de la clase. Se conecta a la base de datos.
+     * Constructor de la clase. Obtiene una conexión del pool de la base de datos.
      * @param host
      * @param database
      */
     public OracleDatabaseConnector(String host, String database) {
 
         try {
-            //Creamos la conexión a la base de datos
-            this.connection = DriverManager.getConnection(
-                    "jdbc:oracle:thin:@//" + host + "/" + database,
-                    System.getenv("ORACLE_USER"),
-                    System.getenv("ORACLE_PASSWORD"));
+            //Obtenemos la conexión del pool compartido. Al cerrarla vuelve al pool en lugar de cerrarse
+            this.connection = ConnectionPool.oracle(host, database).getConnection();
 
         } catch (SQLException e) {
             log.error("Error al conectar con la base de datos", e);
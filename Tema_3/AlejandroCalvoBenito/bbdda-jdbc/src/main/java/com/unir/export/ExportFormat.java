@@ -0,0 +1,186 @@
+package com.unir.export;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Formato de los ficheros de exportación.
+ *
+ * Cada partición escribe sus filas en un fichero propio, sin cabecera, y después se concatenan en orden.
+ * Por eso el formato distingue entre la cabecera y el final del fichero, las filas y el separador entre particiones.
+ */
+public enum ExportFormat {
+
+    /**
+     * CSV con cabecera. Los valores con comas, comillas o saltos de linea van entre comillas. NULL se escribe vacío.
+     */
+    CSV("csv") {
+        @Override
+        public void header(Writer out, List<Column> columns) throws IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                csv(out, columns.get(i).label());
+            }
+            out.write('\n');
+        }
+
+        @Override
+        public void row(Writer out, ResultSet row, List<Column> columns, boolean first) throws SQLException, IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                String value = row.getString(i + 1);
+                if (value != null) {
+                    csv(out, value);
+                }
+            }
+            out.write('\n');
+        }
+
+        @Override
+        public void separator(Writer out) {
+        }
+
+        @Override
+        public void footer(Writer out) {
+        }
+    },
+
+    /**
+     * Array JSON con un objeto por fila. Los números se escriben sin comillas y NULL como null.
+     */
+    JSON("json") {
+        @Override
+        public void header(Writer out, List<Column> columns) throws IOException {
+            out.write("[\n");
+        }
+
+        @Override
+        public void row(Writer out, ResultSet row, List<Column> columns, boolean first) throws SQLException, IOException {
+            if (!first) {
+                out.write(",\n");
+            }
+            out.write('{');
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                json(out, columns.get(i).label());
+                out.write(':');
+                String value = row.getString(i + 1);
+                if (value == null) {
+                    out.write("null");
+                } else if (columns.get(i).numeric()) {
+                    out.write(value);
+                } else {
+                    json(out, value);
+                }
+            }
+            out.write('}');
+        }
+
+        @Override
+        public void separator(Writer out) throws IOException {
+            out.write(",\n");
+        }
+
+        @Override
+        public void footer(Writer out) throws IOException {
+            out.write("\n]\n");
+        }
+    };
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return - Extensión de los ficheros de este formato
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Escribe el principio del fichero.
+     */
+    public abstract void header(Writer out, List<Column> columns) throws IOException;
+
+    /**
+     * Escribe la fila actual del ResultSet. Las columnas están en el mismo orden que en la consulta.
+     * @param first - true si es la primera fila de la partición
+     */
+    public abstract void row(Writer out, ResultSet row, List<Column> columns, boolean first) throws SQLException, IOException;
+
+    /**
+     * Escribe lo que separa la última fila de una partición de la primera de la siguiente.
+     */
+    public abstract void separator(Writer out) throws IOException;
+
+    /**
+     * Escribe el final del fichero.
+     */
+    public abstract void footer(Writer out) throws IOException;
+
+    private static void csv(Writer out, String value) throws IOException {
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    private static void json(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.write("\\\"");
+                case '\\' -> out.write("\\\\");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+                }
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Columna del resultado.
+     * @param label - Nombre o alias de la columna
+     * @param numeric - true si el valor es un número y se puede escribir tal cual
+     */
+    public record Column(String label, boolean numeric) {
+
+        /**
+         * @param sqlType - Tipo de la columna según java.sql.Types
+         * @return - true si es un tipo numérico
+         */
+        public static boolean isNumeric(int sqlType) {
+            return switch (sqlType) {
+                case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT,
+                     Types.DECIMAL, Types.NUMERIC, Types.FLOAT, Types.REAL, Types.DOUBLE -> true;
+                default -> false;
+            };
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.unir.export;
+
+import com.unir.config.ConnectionPool;
+import com.unir.jdbc.Cursors;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Exportación en paralelo de una tabla a un fichero CSV o JSON.
+ *
+ * La tabla se divide en rangos de su clave primaria (WHERE emp_no BETWEEN ? AND ?), y cada rango se lee
+ * con su propia conexión del pool, con un cursor, y se escribe en un fichero temporal.
+ * Al terminar, los ficheros temporales se concatenan en orden de clave, de modo que el resultado
+ * es el mismo que el de una única consulta con ORDER BY.
+ *
+ * Cada rango se localiza por el índice de la clave primaria, en lugar de paginar con LIMIT/OFFSET,
+ * que obliga al servidor a recorrer y descartar todas las filas anteriores a cada página.
+ */
+@Slf4j
+public class KeysetExporter {
+
+    // Rangos por hilo. Con más rangos que hilos, un rango más denso no retrasa al resto
+    private static final int RANGOS_POR_HILO = 4;
+
+    private final ConnectionPool pool;
+    private final int workers;
+    private final int fetchSize;
+
+    /**
+     * Constructor de la clase.
+     * @param pool - Pool de conexiones. Se usa una conexión por hilo
+     * @param workers - Número de rangos que se leen a la vez
+     * @param fetchSize - Filas que se traen del servidor en cada viaje (ver {@link Cursors})
+     */
+    public KeysetExporter(ConnectionPool pool, int workers, int fetchSize) {
+        this.pool = pool;
+        this.workers = workers;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Exporta una tabla completa.
+     * @param table - Tabla
+     * @param keyColumns - Columnas de la clave primaria. La primera debe ser numérica y es la que se divide en rangos
+     * @param format - Formato del fichero
+     * @param output - Fichero de salida
+     * @return - Número de filas exportadas
+     * @throws SQLException - Error al leer la tabla
+     */
+    public long export(String table, List<String> keyColumns, ExportFormat format, Path output) throws SQLException {
+
+        long start = System.nanoTime();
+        String key = keyColumns.getFirst();
+        List<ExportFormat.Column> columns;
+        long min;
+        long max;
+
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            try (ResultSet empty = statement.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+                columns = columns(empty.getMetaData());
+            }
+            try (ResultSet bounds = statement.executeQuery("SELECT MIN(" + key + "), MAX(" + key + ") FROM " + table)) {
+                bounds.next();
+                min = bounds.getLong(1);
+                max = bounds.getLong(2);
+            }
+        }
+
+        String sql = "SELECT * FROM " + table + " WHERE " + key + " BETWEEN ? AND ? ORDER BY " + String.join(", ", keyColumns);
+        List<long[]> ranges = ranges(min, max, workers * RANGOS_POR_HILO);
+
+        Path parts;
+        try {
+            parts = Files.createTempDirectory(output.toAbsolutePath().getParent(), table + "-export");
+        } catch (IOException e) {
+            throw new RuntimeException("Error al crear los ficheros temporales de la exportación", e);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Long>> results = new ArrayList<>(ranges.size());
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] range = ranges.get(i);
+                Path part = parts.resolve(String.format("part-%05d", i));
+                results.add(executor.submit(() -> exportRange(sql, range[0], range[1], columns, format, part)));
+            }
+
+            List<Long> counts = new ArrayList<>(results.size());
+            for (Future<Long> result : results) {
+                counts.add(result.get());
+            }
+
+            merge(parts, counts, columns, format, output);
+            long rows = counts.stream().mapToLong(Long::longValue).sum();
+            log.info("Tabla {} exportada a {}: {} filas en {} rangos, {} ms",
+                    table, output, rows, ranges.size(), (System.nanoTime() - start) / 1_000_000);
+            return rows;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Exportación de " + table + " interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (IOException e) {
+            throw new RuntimeException("Error al escribir el fichero " + output, e);
+        } finally {
+            executor.shutdownNow();
+            delete(parts);
+        }
+    }
+
+    /**
+     * Lee un rango de la tabla y lo escribe en un fichero temporal. Se ejecuta en su propio hilo.
+     * @return - Número de filas escritas
+     */
+    private long exportRange(String sql, long from, long to, List<ExportFormat.Column> columns,
+                             ExportFormat format, Path part) throws SQLException, IOException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement select = Cursors.prepare(connection, sql, fetchSize);
+             Writer out = Files.newBufferedWriter(part, StandardCharsets.UTF_8)) {
+
+            select.setLong(1, from);
+            select.setLong(2, to);
+            long rows = 0;
+            try (ResultSet resultSet = select.executeQuery()) {
+                while (resultSet.next()) {
+                    format.row(out, resultSet, columns, rows == 0);
+                    rows++;
+                }
+            }
+            log.debug("Rango [{}, {}]: {} filas", from, to, rows);
+            return rows;
+        }
+    }
+
+    /**
+     * Concatena los ficheros de los rangos, en orden, en el fichero de salida.
+     */
+    private static void merge(Path parts, List<Long> counts, List<ExportFormat.Column> columns,
+                              ExportFormat format, Path output) throws IOException {
+        try (OutputStream file = Files.newOutputStream(output);
+             Writer out = new OutputStreamWriter(file, StandardCharsets.UTF_8)) {
+
+            format.header(out, columns);
+            boolean empty = true;
+            for (int i = 0; i < counts.size(); i++) {
+                if (counts.get(i) == 0) {
+                    continue;
+                }
+                if (!empty) {
+                    format.separator(out);
+                }
+                // Se vacía el Writer antes de copiar los bytes del rango directamente al fichero
+                out.flush();
+                Files.copy(parts.resolve(String.format("part-%05d", i)), file);
+                empty = false;
+            }
+            format.footer(out);
+        }
+    }
+
+    /**
+     * Divide el intervalo [min, max] en rangos consecutivos del mismo tamaño.
+     */
+    private static List<long[]> ranges(long min, long max, int count) {
+        List<long[]> ranges = new ArrayList<>(count);
+        long width = Math.max(1, (max - min + count) / count);
+        for (long from = min; from <= max; from += width) {
+            ranges.add(new long[]{from, Math.min(max, from + width - 1)});
+        }
+        return ranges;
+    }
+
+    private static List<ExportFormat.Column> columns(ResultSetMetaData metaData) throws SQLException {
+        List<ExportFormat.Column> columns = new ArrayList<>(metaData.getColumnCount());
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            columns.add(new ExportFormat.Column(metaData.getColumnLabel(i), ExportFormat.Column.isNumeric(metaData.getColumnType(i))));
+        }
+        return columns;
+    }
+
+    private static void delete(Path parts) {
+        try (var files = Files.list(parts)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(parts);
+        } catch (IOException e) {
+            log.warn("No se han podido borrar los ficheros temporales de {}", parts, e);
+        }
+    }
+}
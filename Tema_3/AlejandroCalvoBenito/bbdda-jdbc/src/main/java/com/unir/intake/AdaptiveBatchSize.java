@@ -0,0 +1,82 @@
+package com.unir.intake;
+
+/**
+ * Tamaño de lote que se ajusta solo en función del rendimiento medido.
+ *
+ * Tras cada lote completo se calcula el número de filas por segundo:
+ * - Si el rendimiento mejora (o se mantiene), se sigue moviendo el tamaño en la misma dirección.
+ * - Si empeora, se cambia de dirección.
+ * - Si un lote tarda más que la latencia máxima, se reduce siempre.
+ * El tamaño oscila así alrededor del punto en el que el rendimiento deja de crecer (la meseta).
+ *
+ * Cada tabla (y cada hilo) debe tener su propia instancia.
+ */
+public class AdaptiveBatchSize {
+
+    // Margen para no reaccionar al ruido de la medida
+    private static final double TOLERANCIA = 0.95;
+
+    private final int min;
+    private final int max;
+    private final long maxLatencyNanos;
+
+    private int current;
+    private boolean growing = true;
+    private double lastThroughput = 0;
+
+    /**
+     * Constructor de la clase.
+     * @param initial - Tamaño de lote inicial
+     * @param min - Tamaño de lote mínimo
+     * @param max - Tamaño de lote máximo (ojo con max_allowed_packet en MySQL)
+     * @param maxLatencyMillis - Tiempo máximo que debería tardar un lote en milisegundos
+     */
+    public AdaptiveBatchSize(int initial, int min, int max, long maxLatencyMillis) {
+        this.min = min;
+        this.max = max;
+        this.maxLatencyNanos = maxLatencyMillis * 1_000_000;
+        this.current = Math.clamp(initial, min, max);
+    }
+
+    /**
+     * Tamaño de lote fijo, sin ajuste.
+     * @param size - Tamaño de lote
+     * @return - Tamaño de lote que nunca cambia
+     */
+    public static AdaptiveBatchSize fixed(int size) {
+        return new AdaptiveBatchSize(size, size, size, Long.MAX_VALUE / 1_000_000);
+    }
+
+    /**
+     * @return - Tamaño de lote que se debe usar en el siguiente envío
+     */
+    public int current() {
+        return current;
+    }
+
+    /**
+     * Registra la ejecución de un lote completo y recalcula el tamaño del siguiente.
+     * @param rows - Filas del lote
+     * @param nanos - Tiempo que ha tardado el lote
+     */
+    public void record(int rows, long nanos) {
+        double throughput = rows * 1_000_000_000.0 / Math.max(nanos, 1);
+
+        if (nanos > maxLatencyNanos) {
+            growing = false;
+        } else if (throughput < lastThroughput * TOLERANCIA) {
+            growing = !growing;
+        }
+        lastThroughput = throughput;
+
+        int next = growing ? current + Math.max(current / 2, 1) : current - Math.max(current / 3, 1);
+        current = Math.clamp(next, min, max);
+    }
+
+    /**
+     * @return - Filas por segundo del último lote completo
+     */
+    public double lastThroughput() {
+        return lastThroughput;
+    }
+}
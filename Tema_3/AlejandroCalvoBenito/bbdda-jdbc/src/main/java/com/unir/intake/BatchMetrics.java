@@ -0,0 +1,63 @@
+package com.unir.intake;
+
+import lombok.Getter;
+
+/**
+ * Métricas de carga de una tabla: lotes, commits y rendimiento.
+ * Permiten ver con qué tamaño de lote el rendimiento deja de mejorar.
+ */
+@Getter
+public class BatchMetrics {
+
+    private final String table;
+
+    private long batches;
+    private long rows;
+    private long batchNanos;
+
+    private long commits;
+    private long committedRows;
+    private long committedBytes;
+    private long commitNanos;
+
+    private int lastBatchSize;
+
+    public BatchMetrics(String table) {
+        this.table = table;
+    }
+
+    void batch(int size, long nanos) {
+        batches++;
+        rows += size;
+        batchNanos += nanos;
+        lastBatchSize = size;
+    }
+
+    void commit(long rows, long bytes, long nanos) {
+        commits++;
+        committedRows += rows;
+        committedBytes += bytes;
+        commitNanos += nanos;
+    }
+
+    /**
+     * @return - Filas por segundo, contando solo el tiempo de los lotes y los commits
+     */
+    public double getRowsPerSecond() {
+        long nanos = batchNanos + commitNanos;
+        return nanos == 0 ? 0 : rows * 1_000_000_000.0 / nanos;
+    }
+
+    /**
+     * @return - Tiempo medio de un lote en milisegundos
+     */
+    public double getAvgBatchMillis() {
+        return batches == 0 ? 0 : batchNanos / 1_000_000.0 / batches;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d filas en %d lotes (%.1f ms/lote, último de %d), %d commits (%d bytes), %.0f filas/s",
+                table, rows, batches, getAvgBatchMillis(), lastBatchSize, commits, committedBytes, getRowsPerSecond());
+    }
+}
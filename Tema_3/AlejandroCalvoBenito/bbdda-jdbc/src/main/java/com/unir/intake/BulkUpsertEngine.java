@@ -0,0 +1,202 @@
+package com.unir.intake;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Motor de upsert por lotes.
+ * Prepara una única sentencia de upsert (ver {@link SqlDialect}) y acumula las filas en un batch.
+ * Cada lote se envía a la base de datos en un solo viaje, y es la propia base de datos la que decide si inserta o actualiza,
+ * en lugar de hacer un SELECT COUNT(*) por cada registro.
+ *
+ * El tamaño del lote lo decide un {@link AdaptiveBatchSize} y los commits intermedios un {@link CommitPolicy}.
+ * Antes de cada commit intermedio se puede ejecutar una acción en la misma transacción (ver {@link BeforeCommit}).
+ * El commit final lo hace quien lo utiliza.
+ *
+ * Si un lote o un commit falla, el motor queda marcado como fallido: no vuelve a enviar nada
+ * y al cerrarlo solo se cierra la sentencia. Quien lo utiliza debe hacer rollback.
+ *
+ * @param <T> - Tipo de registro
+ */
+@Slf4j
+public class BulkUpsertEngine<T> implements RowWriter<T> {
+
+    private final Connection connection;
+    private final TableMapping<T> mapping;
+    private final PreparedStatement statement;
+    private final AdaptiveBatchSize batchSize;
+    private final CommitPolicy commitPolicy;
+
+    @Getter
+    private final BatchMetrics metrics;
+
+    private int pending = 0;
+    private long pendingBytes = 0;
+    private long uncommittedRows = 0;
+    private long uncommittedBytes = 0;
+    private boolean failed = false;
+
+    @Getter
+    private long total = 0;
+
+    /**
+     * Acción que se ejecuta justo antes de cada commit intermedio, dentro de la misma transacción.
+     * Recibe el número de filas enviadas hasta ese momento.
+     */
+    @Setter
+    private BeforeCommit beforeCommit = rows -> {
+    };
+
+    /**
+     * Constructor de la clase. Prepara la sentencia una única vez.
+     * @param connection - Conexión a la base de datos
+     * @param dialect - Dialecto SQL de la base de datos
+     * @param mapping - Tabla destino
+     * @param batchSize - Tamaño de lote
+     * @param commitPolicy - Cuándo hacer commit durante la carga
+     * @throws SQLException - Error al preparar la sentencia
+     */
+    public BulkUpsertEngine(Connection connection, SqlDialect dialect, TableMapping<T> mapping,
+                            AdaptiveBatchSize batchSize, CommitPolicy commitPolicy) throws SQLException {
+        this.connection = connection;
+        this.mapping = mapping;
+        this.batchSize = batchSize;
+        this.commitPolicy = commitPolicy;
+        this.metrics = new BatchMetrics(mapping.getTable());
+        this.statement = connection.prepareStatement(dialect.upsertSql(mapping));
+    }
+
+    /**
+     * Constructor con tamaño de lote fijo y sin commits intermedios.
+     * @param connection - Conexión a la base de datos
+     * @param dialect - Dialecto SQL de la base de datos
+     * @param mapping - Tabla destino
+     * @param batchSize - Número de filas por lote
+     * @throws SQLException - Error al preparar la sentencia
+     */
+    public BulkUpsertEngine(Connection connection, SqlDialect dialect, TableMapping<T> mapping, int batchSize) throws SQLException {
+        this(connection, dialect, mapping, AdaptiveBatchSize.fixed(batchSize), CommitPolicy.NEVER);
+    }
+
+    /**
+     * Añade una fila al lote. Si el lote está completo, se envía.
+     * @param row - Registro a insertar o actualizar
+     * @throws SQLException - Error al ejecutar el lote
+     */
+    @Override
+    public void add(T row) throws SQLException {
+        checkNotFailed();
+        try {
+            mapping.getBinder().bind(statement, row);
+            statement.addBatch();
+        } catch (SQLException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+        pendingBytes += mapping.getRowSize().bytes(row);
+        if (++pending >= batchSize.current()) {
+            send(true);
+        }
+    }
+
+    /**
+     * Envía las filas pendientes a la base de datos.
+     * @return - Número de filas enviadas
+     * @throws SQLException - Error al ejecutar el lote
+     */
+    public int flush() throws SQLException {
+        checkNotFailed();
+        return send(false);
+    }
+
+    /**
+     * Envía el lote y hace commit si se ha superado el límite de filas o bytes.
+     * @param full - true si el lote está completo. Solo los lotes completos sirven para ajustar el tamaño
+     */
+    private int send(boolean full) throws SQLException {
+        if (pending == 0) {
+            return 0;
+        }
+
+        int sent = pending;
+        long sentBytes = pendingBytes;
+        long start = System.nanoTime();
+        try {
+            statement.executeBatch();
+        } catch (SQLException | RuntimeException e) {
+            // OJO! Las filas del lote no se cuentan: el punto de control no debe incluirlas
+            failed = true;
+            throw e;
+        } finally {
+            pending = 0;
+            pendingBytes = 0;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        metrics.batch(sent, elapsed);
+        if (full) {
+            batchSize.record(sent, elapsed);
+        }
+
+        total += sent;
+        uncommittedRows += sent;
+        uncommittedBytes += sentBytes;
+
+        if (commitPolicy.isDue(uncommittedRows, uncommittedBytes)) {
+            commit();
+        }
+        return sent;
+    }
+
+    private void commit() throws SQLException {
+        long start;
+        try {
+            beforeCommit.run(total);
+            start = System.nanoTime();
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+        metrics.commit(uncommittedRows, uncommittedBytes, System.nanoTime() - start);
+        log.debug("Commit de {} filas en {} (lote actual: {}, {} filas/s)",
+                uncommittedRows, mapping.getTable(), batchSize.current(), Math.round(batchSize.lastThroughput()));
+        uncommittedRows = 0;
+        uncommittedBytes = 0;
+    }
+
+    private void checkNotFailed() {
+        if (failed) {
+            throw new IllegalStateException("La carga de " + mapping.getTable() + " ha fallado. Hay que hacer rollback");
+        }
+    }
+
+    /**
+     * Envía el último lote y cierra la sentencia.
+     * Si la carga ha fallado, solo cierra la sentencia: no envía nada ni hace commit.
+     * @throws SQLException - Error al ejecutar el lote
+     */
+    @Override
+    public void close() throws SQLException {
+        if (failed) {
+            statement.close();
+            return;
+        }
+        try {
+            flush();
+            log.info("{}", metrics);
+        } finally {
+            statement.close();
+        }
+    }
+
+    @FunctionalInterface
+    public interface BeforeCommit {
+        void run(long rows) throws SQLException;
+    }
+}
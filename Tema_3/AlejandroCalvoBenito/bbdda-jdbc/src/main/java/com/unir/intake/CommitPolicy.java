@@ -0,0 +1,31 @@
+package com.unir.intake;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Cuándo hacer commit durante una carga.
+ * En lugar de una única transacción gigante, se confirma cada vez que se supera un número de filas o de bytes.
+ * Un valor 0 desactiva el límite correspondiente.
+ */
+@AllArgsConstructor
+@Getter
+public class CommitPolicy {
+
+    /**
+     * No se hace commit durante la carga. Quien la lanza hace commit al final.
+     */
+    public static final CommitPolicy NEVER = new CommitPolicy(0, 0);
+
+    private final long maxRows;
+    private final long maxBytes;
+
+    /**
+     * @param rows - Filas enviadas desde el último commit
+     * @param bytes - Bytes (estimados) enviados desde el último commit
+     * @return - true si toca hacer commit
+     */
+    public boolean isDue(long rows, long bytes) {
+        return (maxRows > 0 && rows >= maxRows) || (maxBytes > 0 && bytes >= maxBytes);
+    }
+}
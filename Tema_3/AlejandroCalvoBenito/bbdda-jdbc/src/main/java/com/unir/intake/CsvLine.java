@@ -0,0 +1,148 @@
+package com.unir.intake;
+
+import java.sql.Date;
+import java.util.Arrays;
+
+/**
+ * Una linea de un fichero CSV, leída por un {@link CsvLineReader}.
+ * No copia los caracteres: guarda dónde empieza y acaba cada campo dentro del buffer del lector.
+ * Los números y las fechas se leen directamente de esos caracteres, sin crear Strings intermedios.
+ *
+ * OJO! El objeto se reutiliza para cada linea: solo es válido hasta la siguiente llamada a {@link CsvLineReader#next()}.
+ * Los ficheros de este proyecto no usan comillas, así que no se admiten.
+ */
+public final class CsvLine {
+
+    // Strings de un caracter (gender: M/F) compartidos, para no crear uno por linea
+    private static final String[] ONE_CHAR = new String[128];
+
+    static {
+        for (char c = 0; c < ONE_CHAR.length; c++) {
+            ONE_CHAR[c] = String.valueOf(c);
+        }
+    }
+
+    private char[] chars;
+    private int start;
+    private int end;
+
+    private int fields = 0;
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+
+    /**
+     * Apunta la linea a una zona del buffer del lector y localiza los campos.
+     */
+    void set(char[] chars, int start, int end) {
+        this.chars = chars;
+        this.start = start;
+        this.end = end;
+
+        fields = 0;
+        int fieldStart = start;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (c == ',') {
+                addField(fieldStart, i);
+                fieldStart = i + 1;
+            } else if (c == '"') {
+                throw new IllegalArgumentException("Campos entre comillas no soportados: " + this);
+            }
+        }
+        addField(fieldStart, end);
+    }
+
+    private void addField(int fieldStart, int fieldEnd) {
+        if (fields == starts.length) {
+            starts = Arrays.copyOf(starts, fields * 2);
+            ends = Arrays.copyOf(ends, fields * 2);
+        }
+        starts[fields] = fieldStart;
+        ends[fields] = fieldEnd;
+        fields++;
+    }
+
+    /**
+     * @return - Número de campos de la linea
+     */
+    public int fields() {
+        return fields;
+    }
+
+    /**
+     * @return - Número de caracteres de la linea
+     */
+    public int length() {
+        return end - start;
+    }
+
+    /**
+     * Comprueba que la linea tiene el número de campos esperado.
+     * @param expected - Campos esperados
+     * @return - La propia linea
+     */
+    public CsvLine expect(int expected) {
+        if (fields != expected) {
+            throw new IllegalArgumentException("Se esperaban " + expected + " campos y hay " + fields + ": " + this);
+        }
+        return this;
+    }
+
+    /**
+     * @param field - Posición del campo (desde 0)
+     * @return - El campo como entero
+     */
+    public int getInt(int field) {
+        int i = starts[field];
+        int last = ends[field];
+        if (i == last) {
+            throw new IllegalArgumentException("Campo " + field + " vacío: " + this);
+        }
+        boolean negative = chars[i] == '-';
+        if (negative) {
+            i++;
+        }
+        int value = 0;
+        for (; i < last; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("Campo " + field + " no es un número: " + this);
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * @param field - Posición del campo (desde 0)
+     * @return - El campo como fecha, en días desde 1970-01-01
+     */
+    public int getEpochDay(int field) {
+        return EpochDays.parse(chars, starts[field], ends[field] - starts[field]);
+    }
+
+    /**
+     * @param field - Posición del campo (desde 0)
+     * @return - El campo como fecha. La instancia es compartida y no se debe modificar
+     */
+    public Date getDate(int field) {
+        return EpochDays.toSqlDate(getEpochDay(field));
+    }
+
+    /**
+     * @param field - Posición del campo (desde 0)
+     * @return - El campo como texto
+     */
+    public String getString(int field) {
+        int length = ends[field] - starts[field];
+        if (length == 1 && chars[starts[field]] < ONE_CHAR.length) {
+            return ONE_CHAR[chars[starts[field]]];
+        }
+        return new String(chars, starts[field], length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, start, end - start);
+    }
+}
@@ -0,0 +1,171 @@
+package com.unir.intake;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+
+/**
+ * Lector de ficheros CSV sin comillas (como los del schema employees) que no crea objetos por linea.
+ * Los caracteres se leen en un único CharBuffer que se reutiliza durante toda la lectura,
+ * y cada linea se expone como un {@link CsvLine} que apunta a ese buffer.
+ *
+ * Frente a OpenCSV, no se crea un String[] ni un String por campo: los números y las fechas se leen directamente del buffer.
+ */
+public class CsvLineReader implements Closeable {
+
+    // Tamaño del buffer de caracteres. Ninguna linea puede ser más larga
+    private static final int BUFFER = 64 * 1024;
+
+    private final Reader reader;
+    private final CharBuffer buffer = CharBuffer.allocate(BUFFER);
+    private final CsvLine line = new CsvLine();
+    private boolean eof = false;
+    private int lineStart;
+    private int lineEnd;
+
+    /**
+     * Constructor de la clase.
+     * @param reader - Origen de los caracteres. No hace falta que tenga buffer propio
+     */
+    public CsvLineReader(Reader reader) {
+        this.reader = reader;
+        // El buffer está vacío y en modo lectura
+        this.buffer.flip();
+    }
+
+    /**
+     * Abre un fichero CSV en UTF-8 y salta la primera linea, que contiene los nombres de las columnas.
+     * @param file - Ruta del fichero
+     * @return - Lector posicionado en la primera linea de datos
+     * @throws IOException - Error al abrir o leer el fichero
+     */
+    public static CsvLineReader open(String file) throws IOException {
+        CsvLineReader reader = new CsvLineReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        reader.skip(1);
+        return reader;
+    }
+
+    /**
+     * Lee un fichero CSV completo y entrega cada linea al destino.
+     * La linea se reutiliza: el destino debe consumirla (por ejemplo, enlazarla en una sentencia) antes de volver.
+     * @param file - Ruta del fichero
+     * @param sink - Destino de las lineas, normalmente un {@link BulkUpsertEngine}
+     * @return - Número de lineas leídas, sin contar la cabecera
+     * @throws SQLException - Error al escribir en la base de datos
+     */
+    public static long forEach(String file, CsvPipeline.Sink<CsvLine> sink) throws SQLException {
+        return forEach(file, 0, sink);
+    }
+
+    /**
+     * Lee un fichero CSV a partir de una linea y entrega cada linea al destino. Sirve para reanudar una carga.
+     * @param file - Ruta del fichero
+     * @param from - Número de lineas de datos que se saltan sin entregar
+     * @param sink - Destino de las lineas, normalmente un {@link BulkUpsertEngine}
+     * @return - Número de lineas entregadas
+     * @throws SQLException - Error al escribir en la base de datos
+     */
+    public static long forEach(String file, long from, CsvPipeline.Sink<CsvLine> sink) throws SQLException {
+        long rows = 0;
+        try (CsvLineReader reader = open(file)) {
+            if (reader.skip(from) < from) {
+                throw new IllegalStateException("El fichero " + file + " tiene menos de " + from + " lineas");
+            }
+            CsvLine line;
+            while ((line = reader.next()) != null) {
+                sink.accept(line);
+                rows++;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error al leer el fichero CSV " + file, e);
+        }
+        return rows;
+    }
+
+    /**
+     * Avanza a la siguiente linea. Las lineas vacías se saltan.
+     * @return - La linea, o null si se ha llegado al final. Es siempre el mismo objeto
+     * @throws IOException - Error al leer o linea más larga que el buffer
+     */
+    public CsvLine next() throws IOException {
+        if (!advance()) {
+            return null;
+        }
+        line.set(buffer.array(), lineStart, lineEnd);
+        return line;
+    }
+
+    /**
+     * Salta lineas sin separar sus campos. Las lineas vacías no cuentan.
+     * @param rows - Número de lineas a saltar
+     * @return - Número de lineas saltadas. Menor que rows si se llega al final
+     * @throws IOException - Error al leer o linea más larga que el buffer
+     */
+    public long skip(long rows) throws IOException {
+        long skipped = 0;
+        while (skipped < rows && advance()) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    /**
+     * Busca la siguiente linea no vacía y deja sus límites en lineStart y lineEnd.
+     * @return - false si se ha llegado al final
+     */
+    private boolean advance() throws IOException {
+        while (true) {
+            char[] chars = buffer.array();
+            int start = buffer.position();
+            int limit = buffer.limit();
+
+            for (int i = start; i < limit; i++) {
+                if (chars[i] == '\n') {
+                    buffer.position(i + 1);
+                    int end = i > start && chars[i - 1] == '\r' ? i - 1 : i;
+                    if (end == start) {
+                        start = i + 1;
+                        continue;
+                    }
+                    lineStart = start;
+                    lineEnd = end;
+                    return true;
+                }
+            }
+
+            if (eof) {
+                // Última linea sin salto de linea al final
+                buffer.position(limit);
+                int end = start < limit && chars[limit - 1] == '\r' ? limit - 1 : limit;
+                if (end == start) {
+                    return false;
+                }
+                lineStart = start;
+                lineEnd = end;
+                return true;
+            }
+
+            // Movemos la linea incompleta al principio del buffer y lo rellenamos
+            buffer.position(start);
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                throw new IOException("Linea de más de " + BUFFER + " caracteres");
+            }
+            int read = reader.read(buffer);
+            buffer.flip();
+            if (read == -1) {
+                eof = true;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,123 @@
+package com.unir.intake;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Carga en streaming de un fichero CSV.
+ * Un hilo lee y convierte las lineas del fichero y las deja, en bloques, en una cola acotada.
+ * El hilo que invoca a {@link #run(Sink)} va vaciando la cola y enviando los registros a la base de datos.
+ *
+ * Si la base de datos va más lenta que la lectura, la cola se llena y el lector espera (backpressure).
+ * Así la memoria usada depende del tamaño de la cola y no del tamaño del fichero.
+ *
+ * @param <T> - Tipo de registro
+ */
+@Slf4j
+public class CsvPipeline<T> {
+
+    // Número de registros que viajan juntos por la cola, para no sincronizar en cada fila
+    private static final int BLOQUE = 500;
+
+    private final CsvSource<T> source;
+    private final BlockingQueue<List<T>> queue;
+
+    // Bloque vacío que marca el final del fichero. Se compara por identidad
+    private final List<T> end = new ArrayList<>(0);
+
+    private volatile Exception failure;
+
+    /**
+     * Constructor de la clase.
+     * @param source - Fichero CSV a cargar
+     * @param capacity - Número máximo de bloques en memoria a la espera de ser escritos
+     */
+    public CsvPipeline(CsvSource<T> source, int capacity) {
+        this.source = source;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Lee el fichero en segundo plano y entrega cada registro al destino según llega.
+     * @param sink - Destino de los registros, normalmente un {@link BulkUpsertEngine}
+     * @return - Número de registros entregados
+     * @throws SQLException - Error al escribir en la base de datos
+     */
+    public long run(Sink<T> sink) throws SQLException {
+
+        Thread parser = new Thread(this::parse, "csv-" + source.getFile());
+        parser.start();
+
+        long rows = 0;
+        try {
+            List<T> chunk;
+            while ((chunk = queue.take()) != end) {
+                for (T row : chunk) {
+                    sink.accept(row);
+                }
+                rows += chunk.size();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Carga de " + source.getFile() + " interrumpida", e);
+        } finally {
+            // Si la escritura falla, el lector puede estar bloqueado esperando hueco en la cola
+            parser.interrupt();
+        }
+
+        if (failure != null) {
+            log.error("Error al leer el fichero CSV {}", source.getFile(), failure);
+            throw new RuntimeException(failure);
+        }
+        log.info("Fichero {} cargado: {} registros", source.getFile(), rows);
+        return rows;
+    }
+
+    /**
+     * Etapa de lectura. Se ejecuta en su propio hilo.
+     */
+    private void parse() {
+
+        // Try-with-resources. Se cierra el reader automáticamente al salir del bloque try
+        // open() salta la primera linea, que contiene los nombres de las columnas del CSV
+        try (CsvLineReader reader = CsvLineReader.open(source.getFile())) {
+
+            CsvLine nextLine;
+            List<T> chunk = new ArrayList<>(BLOQUE);
+
+            while ((nextLine = reader.next()) != null) {
+                chunk.add(source.getParser().parse(nextLine));
+                if (chunk.size() == BLOQUE) {
+                    queue.put(chunk); // Espera si la cola está llena
+                    chunk = new ArrayList<>(BLOQUE);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                queue.put(chunk);
+            }
+        } catch (InterruptedException e) {
+            // La escritura ha terminado antes de tiempo, nadie va a leer de la cola
+            Thread.currentThread().interrupt();
+            return;
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+
+        try {
+            queue.put(end);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Sink<T> {
+        void accept(T row) throws SQLException;
+    }
+}
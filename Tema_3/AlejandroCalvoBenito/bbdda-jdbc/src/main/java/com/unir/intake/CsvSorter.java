@@ -0,0 +1,253 @@
+package com.unir.intake;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Ordena un fichero CSV por su clave primaria antes de cargarlo.
+ *
+ * InnoDB guarda las filas en el orden de la clave primaria (índice agrupado). Si llegan desordenadas, cada inserción cae
+ * en una página cualquiera del índice y, cuando está llena, la divide en dos medio vacías. En orden, las inserciones van
+ * siempre al final: las páginas se llenan casi por completo, se escriben menos y el índice ocupa menos.
+ *
+ * La clave son los primeros campos de cada linea (el mismo orden que las columnas clave del {@link TableMapping}):
+ * el primero es numérico (emp_no) y el resto se comparan como texto (dept_no).
+ * Si el fichero cabe en la memoria indicada, se ordena en memoria. Si no, se ordena por tramos que se guardan en ficheros
+ * temporales y después se mezclan (merge sort externo).
+ *
+ * La ordenación es estable: si una clave se repite, sus lineas quedan en el orden del fichero y la última sigue siendo
+ * la que prevalece en el upsert.
+ */
+@Slf4j
+public class CsvSorter {
+
+    // Memoria para las lineas de cada tramo
+    private static final long MEMORIA = 64 * 1024 * 1024;
+
+    // Estimación de la memoria de cada fila, además de sus caracteres (objetos, cabeceras de String, referencias)
+    private static final int BYTES_POR_FILA = 112;
+
+    private static final Comparator<Row> ORDEN = Comparator.comparingLong(Row::number).thenComparing(Row::text);
+
+    private final int keyFields;
+    private final long memory;
+
+    /**
+     * Constructor de la clase.
+     * @param keyFields - Número de campos que forman la clave, al principio de cada linea
+     */
+    public CsvSorter(int keyFields) {
+        this(keyFields, MEMORIA);
+    }
+
+    /**
+     * Constructor de la clase.
+     * @param keyFields - Número de campos que forman la clave, al principio de cada linea
+     * @param memory - Bytes de lineas que se ordenan en memoria antes de pasar a un fichero temporal
+     */
+    public CsvSorter(int keyFields, long memory) {
+        this.keyFields = keyFields;
+        this.memory = memory;
+    }
+
+    /**
+     * Ordena un fichero CSV. El resultado se guarda junto al original, con la extensión .sorted, y conserva la cabecera.
+     * Si ya existe y es más reciente que el original, se reutiliza: así no cambia su fecha y una carga interrumpida
+     * se puede reanudar desde su punto de control (ver {@link IntakeCheckpoints}).
+     * @param file - Ruta del fichero
+     * @return - Ruta del fichero ordenado. Si el fichero está vacío (ni siquiera tiene cabecera), el propio fichero
+     */
+    public String sort(String file) {
+        Path source = Path.of(file);
+        Path sorted = Path.of(file + ".sorted");
+        try {
+            if (Files.exists(sorted) && Files.getLastModifiedTime(sorted).compareTo(Files.getLastModifiedTime(source)) >= 0) {
+                log.info("Se reutiliza el fichero ordenado {}", sorted);
+                return sorted.toString();
+            }
+
+            long start = System.nanoTime();
+            Path work = source.toAbsolutePath().getParent();
+            Path partial = Files.createTempFile(work, sorted.getFileName().toString(), ".tmp");
+            Path runs = Files.createTempDirectory(work, "sort");
+            try {
+                String header;
+                try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+                    header = reader.readLine();
+                }
+                if (header == null) {
+                    log.warn("El fichero {} está vacío. Se carga tal cual", file);
+                    return file;
+                }
+
+                List<Path> written = new ArrayList<>();
+                List<Row> rows = new ArrayList<>();
+                long rowsTotal = 0;
+                try (CsvLineReader reader = CsvLineReader.open(file)) {
+                    long bytes = 0;
+                    CsvLine line;
+                    while ((line = reader.next()) != null) {
+                        rows.add(row(line));
+                        bytes += 2L * line.length() + BYTES_POR_FILA;
+                        rowsTotal++;
+                        if (bytes >= memory) {
+                            written.add(spill(rows, runs.resolve(String.format("run-%05d", written.size()))));
+                            rows.clear();
+                            bytes = 0;
+                        }
+                    }
+                }
+
+                try (Writer out = Files.newBufferedWriter(partial, StandardCharsets.UTF_8)) {
+                    out.write(header);
+                    out.write('\n');
+                    if (written.isEmpty()) {
+                        // Todo el fichero cabe en memoria
+                        rows.sort(ORDEN);
+                        write(out, rows);
+                    } else {
+                        if (!rows.isEmpty()) {
+                            written.add(spill(rows, runs.resolve(String.format("run-%05d", written.size()))));
+                        }
+                        merge(written, out);
+                    }
+                }
+                Files.move(partial, sorted, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                log.info("Fichero {} ordenado por clave: {} lineas, {} tramos, {} ms",
+                        file, rowsTotal, Math.max(1, written.size()), (System.nanoTime() - start) / 1_000_000);
+                return sorted.toString();
+
+            } finally {
+                Files.deleteIfExists(partial);
+                delete(runs);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error al ordenar el fichero CSV " + file, e);
+        }
+    }
+
+    /**
+     * Ordena un tramo en memoria y lo guarda en un fichero temporal, sin cabecera.
+     */
+    private static Path spill(List<Row> rows, Path run) throws IOException {
+        rows.sort(ORDEN);
+        try (Writer out = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+            write(out, rows);
+        }
+        log.debug("Tramo {} ordenado: {} lineas", run.getFileName(), rows.size());
+        return run;
+    }
+
+    /**
+     * Mezcla los tramos ordenados. En cada paso se escribe la menor de las primeras lineas de cada tramo.
+     * Con claves iguales va primero el tramo anterior, que contiene las lineas anteriores del fichero.
+     */
+    private void merge(List<Path> runs, Writer out) throws IOException {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(runs.size(),
+                Comparator.comparing(Cursor::current, ORDEN).thenComparingInt(Cursor::run));
+        List<CsvLineReader> readers = new ArrayList<>(runs.size());
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                CsvLineReader reader = new CsvLineReader(Files.newBufferedReader(runs.get(i), StandardCharsets.UTF_8));
+                readers.add(reader);
+                Cursor cursor = new Cursor(reader, i);
+                if (cursor.advance(this)) {
+                    heads.add(cursor);
+                }
+            }
+
+            Cursor cursor;
+            while ((cursor = heads.poll()) != null) {
+                out.write(cursor.current().line());
+                out.write('\n');
+                if (cursor.advance(this)) {
+                    heads.add(cursor);
+                }
+            }
+        } finally {
+            for (CsvLineReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private static void write(Writer out, List<Row> rows) throws IOException {
+        for (Row row : rows) {
+            out.write(row.line());
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Copia la linea y extrae su clave. La linea del lector se reutiliza, así que no se puede guardar.
+     */
+    private Row row(CsvLine line) {
+        String text = "";
+        if (keyFields > 1) {
+            StringBuilder key = new StringBuilder(line.getString(1));
+            for (int i = 2; i < keyFields; i++) {
+                key.append(',').append(line.getString(i));
+            }
+            text = key.toString();
+        }
+        return new Row(line.getInt(0), text, line.toString());
+    }
+
+    private static void delete(Path runs) {
+        try (var files = Files.list(runs)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(runs);
+        } catch (IOException e) {
+            log.warn("No se han podido borrar los ficheros temporales de {}", runs, e);
+        }
+    }
+
+    /**
+     * Linea con su clave ya extraída: la parte numérica y el resto de campos clave como texto.
+     */
+    private record Row(long number, String text, String line) {
+    }
+
+    /**
+     * Posición de lectura en un tramo durante la mezcla.
+     */
+    private static final class Cursor {
+
+        private final CsvLineReader reader;
+        private final int run;
+        private Row current;
+
+        private Cursor(CsvLineReader reader, int run) {
+            this.reader = reader;
+            this.run = run;
+        }
+
+        private boolean advance(CsvSorter sorter) throws IOException {
+            CsvLine line = reader.next();
+            current = line == null ? null : sorter.row(line);
+            return current != null;
+        }
+
+        private Row current() {
+            return current;
+        }
+
+        private int run() {
+            return run;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.unir.intake;
+
+import com.unir.model.MySqlDepartment;
+import com.unir.model.MySqlDeptEmpt;
+import com.unir.model.MySqlEmployee;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Fichero CSV de entrada y la forma de convertir cada una de sus lineas en un registro.
+ * Los ficheros deben estar en la raíz del proyecto y su primera linea contiene los nombres de las columnas.
+ * Las lineas se leen con un {@link CsvLineReader}: los números y las fechas se convierten sin Strings intermedios.
+ *
+ * @param <T> - Tipo de registro
+ */
+@AllArgsConstructor
+@Getter
+public class CsvSource<T> {
+
+    public static final CsvSource<MySqlEmployee> EMPLOYEES = new CsvSource<>(
+            "employees_continued.csv",
+            line -> new MySqlEmployee(
+                    line.expect(6).getInt(0),
+                    line.getString(1),
+                    line.getString(2),
+                    line.getString(3),
+                    line.getDate(4),
+                    line.getDate(5)));
+
+    public static final CsvSource<MySqlDepartment> DEPARTMENTS = new CsvSource<>(
+            "departments_continued.csv",
+            line -> new MySqlDepartment(
+                    line.expect(2).getString(0),
+                    line.getString(1)));
+
+    public static final CsvSource<MySqlDeptEmpt> DEPT_EMP = new CsvSource<>(
+            "employees_departments_related_dates.csv",
+            line -> new MySqlDeptEmpt(
+                    line.expect(4).getInt(0),
+                    line.getString(1),
+                    line.getDate(2),
+                    line.getDate(3)));
+
+    private final String file;
+    private final RowParser<T> parser;
+
+    @FunctionalInterface
+    public interface RowParser<T> {
+        T parse(CsvLine line);
+    }
+}
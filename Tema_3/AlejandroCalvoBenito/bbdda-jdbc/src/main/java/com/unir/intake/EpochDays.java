@@ -0,0 +1,94 @@
+package com.unir.intake;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Conversión de fechas ISO (yyyy-MM-dd) a días desde 1970-01-01 sin crear objetos intermedios,
+ * y caché de los java.sql.Date correspondientes.
+ *
+ * Los ficheros de empleados repiten las mismas fechas miles de veces, así que cada java.sql.Date se crea una única vez.
+ * OJO! Las fechas de la caché se comparten: no se deben modificar nunca (setTime).
+ */
+public final class EpochDays {
+
+    // Rango de fechas cacheadas: de 1900-01-01 a 2099-12-31
+    private static final int PRIMER_DIA = (int) LocalDate.of(1900, 1, 1).toEpochDay();
+    private static final int ULTIMO_DIA = (int) LocalDate.of(2099, 12, 31).toEpochDay();
+
+    private static final AtomicReferenceArray<Date> DATES = new AtomicReferenceArray<>(ULTIMO_DIA - PRIMER_DIA + 1);
+
+    private EpochDays() {
+    }
+
+    /**
+     * Convierte una fecha yyyy-MM-dd en días desde 1970-01-01.
+     * @param chars - Caracteres de la linea
+     * @param start - Posición del primer caracter de la fecha
+     * @param length - Longitud del campo. Debe ser 10
+     * @return - Días desde 1970-01-01
+     */
+    public static int parse(char[] chars, int start, int length) {
+        if (length != 10 || chars[start + 4] != '-' || chars[start + 7] != '-') {
+            throw new IllegalArgumentException("Fecha no válida: " + new String(chars, start, length));
+        }
+        int year = digits(chars, start, 4);
+        int month = digits(chars, start + 5, 2);
+        int day = digits(chars, start + 8, 2);
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            throw new IllegalArgumentException("Fecha no válida: " + new String(chars, start, length));
+        }
+        return toEpochDay(year, month, day);
+    }
+
+    /**
+     * @param epochDay - Días desde 1970-01-01
+     * @return - La fecha como java.sql.Date (compartida si está en el rango de la caché)
+     */
+    public static Date toSqlDate(int epochDay) {
+        if (epochDay < PRIMER_DIA || epochDay > ULTIMO_DIA) {
+            return Date.valueOf(LocalDate.ofEpochDay(epochDay));
+        }
+        int index = epochDay - PRIMER_DIA;
+        Date date = DATES.get(index);
+        if (date == null) {
+            // Si dos hilos llegan a la vez, los dos crean la misma fecha y da igual cuál se quede
+            date = Date.valueOf(LocalDate.ofEpochDay(epochDay));
+            DATES.set(index, date);
+        }
+        return date;
+    }
+
+    /**
+     * Días desde 1970-01-01 en el calendario gregoriano (algoritmo "days from civil" de Howard Hinnant).
+     */
+    static int toEpochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static int digits(char[] chars, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("Fecha no válida: " + new String(chars, start, count));
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,247 @@
+package com.unir.intake;
+
+import com.mysql.cj.conf.PropertyKey;
+import com.mysql.cj.jdbc.JdbcConnection;
+import com.mysql.cj.jdbc.JdbcStatement;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.stream.Collectors;
+
+/**
+ * Carga rápida para MySQL mediante LOAD DATA LOCAL INFILE, el cargador masivo nativo de la base de datos.
+ *
+ * Los registros (ya validados y con las fechas normalizadas a yyyy-MM-dd) se escriben como texto separado por tabuladores
+ * en un buffer en memoria. Cada vez que el buffer alcanza el tamaño indicado, se envía al servidor como si fuera un fichero,
+ * usando un InputStream en lugar de un fichero en disco.
+ *
+ * Los datos se cargan primero en una tabla temporal con la misma estructura que la tabla destino, y al cerrar se vuelcan
+ * con un único INSERT ... SELECT ... ON DUPLICATE KEY UPDATE. No se usa LOAD DATA ... REPLACE porque REPLACE borra la fila
+ * antigua antes de insertar la nueva, y el borrado se propagaría en cascada a las tablas hijas (dept_emp).
+ *
+ * Requiere local_infile=ON en el servidor y allowLoadLocalInfile=true en la conexión. Si no, ver {@link #isAvailable(Connection)}.
+ *
+ * @param <T> - Tipo de registro
+ */
+@Slf4j
+public class FastLoader<T> implements RowWriter<T> {
+
+    private final Connection connection;
+    private final TableMapping<T> mapping;
+    private final RowFormat<T> format;
+    private final int chunkBytes;
+    private final String staging;
+
+    private final Line line = new Line();
+    private final ByteArrayOutputStream buffer;
+
+    @Getter
+    private long total = 0;
+    private long pending = 0;
+
+    /**
+     * Constructor de la clase. Crea la tabla temporal.
+     * @param connection - Conexión a MySQL, con allowLoadLocalInfile=true
+     * @param mapping - Tabla destino
+     * @param format - Forma de escribir cada registro como una linea de texto
+     * @param chunkBytes - Bytes que se acumulan en memoria antes de enviarlos
+     * @throws SQLException - Error al crear la tabla temporal
+     */
+    public FastLoader(Connection connection, TableMapping<T> mapping, RowFormat<T> format, int chunkBytes) throws SQLException {
+        this.connection = connection;
+        this.mapping = mapping;
+        this.format = format;
+        this.chunkBytes = chunkBytes;
+        this.staging = "tmp_" + mapping.getTable();
+        this.buffer = new ByteArrayOutputStream(chunkBytes + 1024);
+
+        // CREATE TEMPORARY TABLE no hace commit implícito, y la tabla solo la ve esta conexión.
+        // LIKE copia columnas e índices pero no claves foráneas
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TEMPORARY TABLE IF EXISTS " + staging);
+            statement.execute("CREATE TEMPORARY TABLE " + staging + " LIKE " + mapping.getTable());
+        }
+    }
+
+    /**
+     * Comprueba si se puede usar LOAD DATA LOCAL INFILE con esta conexión.
+     * @param connection - Conexión a la base de datos
+     * @return - true si la conexión es de MySQL y tanto el driver como el servidor lo permiten
+     */
+    public static boolean isAvailable(Connection connection) {
+        try {
+            if (!connection.isWrapperFor(JdbcConnection.class)) {
+                return false;
+            }
+            boolean allowedByDriver = connection.unwrap(JdbcConnection.class).getPropertySet()
+                    .getBooleanProperty(PropertyKey.allowLoadLocalInfile).getValue();
+            if (!allowedByDriver) {
+                log.warn("La conexión no tiene allowLoadLocalInfile=true");
+                return false;
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT @@GLOBAL.local_infile")) {
+                boolean allowedByServer = resultSet.next() && resultSet.getBoolean(1);
+                if (!allowedByServer) {
+                    log.warn("El servidor MySQL tiene local_infile desactivado");
+                }
+                return allowedByServer;
+            }
+        } catch (SQLException | RuntimeException e) {
+            log.warn("No se puede comprobar si LOAD DATA LOCAL INFILE está disponible", e);
+            return false;
+        }
+    }
+
+    @Override
+    public void add(T row) throws SQLException {
+        line.reset();
+        format.write(row, line);
+        line.end();
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        buffer.write(bytes, 0, bytes.length);
+        pending++;
+        if (buffer.size() >= chunkBytes) {
+            load();
+        }
+    }
+
+    /**
+     * Envía el buffer a la tabla temporal con LOAD DATA LOCAL INFILE.
+     */
+    private void load() throws SQLException {
+        if (pending == 0) {
+            return;
+        }
+        String sql = "LOAD DATA LOCAL INFILE 'stream' INTO TABLE " + staging
+                + " CHARACTER SET utf8mb4"
+                + " FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'"
+                + " LINES TERMINATED BY '\\n'"
+                + " (" + String.join(", ", mapping.getColumns()) + ")";
+
+        long start = System.nanoTime();
+        try (Statement statement = connection.createStatement()) {
+            // El driver lee los datos de este InputStream en lugar de abrir el fichero 'stream'
+            statement.unwrap(JdbcStatement.class)
+                    .setLocalInfileInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+            statement.execute(sql);
+        }
+        log.debug("LOAD DATA de {} filas ({} bytes) en {}: {} ms",
+                pending, buffer.size(), staging, (System.nanoTime() - start) / 1_000_000);
+
+        total += pending;
+        pending = 0;
+        buffer.reset();
+    }
+
+    /**
+     * Envía lo que queda en el buffer y vuelca la tabla temporal sobre la tabla destino.
+     * El commit lo hace quien lo utiliza.
+     * @throws SQLException - Error al cargar o volcar los datos
+     */
+    @Override
+    public void close() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            load();
+
+            String columns = String.join(", ", mapping.getColumns());
+            long start = System.nanoTime();
+            int rows = statement.executeUpdate("INSERT INTO " + mapping.getTable() + " (" + columns + ")"
+                    + " SELECT " + columns + " FROM " + staging
+                    + " ON DUPLICATE KEY UPDATE "
+                    + mapping.getValueColumns().stream()
+                        .map(column -> column + " = VALUES(" + column + ")")
+                        .collect(Collectors.joining(", ")));
+            log.info("Carga rápida de {}: {} filas leídas, {} filas afectadas en {} ms",
+                    mapping.getTable(), total, rows, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP TEMPORARY TABLE IF EXISTS " + staging);
+            }
+        }
+    }
+
+    /**
+     * Escribe los campos de un registro en una linea de texto.
+     * Los campos se escriben en el mismo orden que {@link TableMapping#getColumns()}.
+     */
+    @FunctionalInterface
+    public interface RowFormat<T> {
+        void write(T row, Line line);
+    }
+
+    /**
+     * Linea de texto en el formato por defecto de LOAD DATA: campos separados por tabuladores,
+     * \N para NULL y barra invertida para escapar caracteres especiales.
+     */
+    public static final class Line {
+
+        private final StringBuilder text = new StringBuilder(128);
+        private boolean first = true;
+
+        private void reset() {
+            text.setLength(0);
+            first = true;
+        }
+
+        private void end() {
+            text.append('\n');
+        }
+
+        private void separator() {
+            if (!first) {
+                text.append('\t');
+            }
+            first = false;
+        }
+
+        public Line add(int value) {
+            separator();
+            text.append(value);
+            return this;
+        }
+
+        public Line add(Date value) {
+            separator();
+            if (value == null) {
+                text.append("\\N");
+            } else {
+                // java.sql.Date.toString() siempre devuelve yyyy-MM-dd
+                text.append(value);
+            }
+            return this;
+        }
+
+        public Line add(String value) {
+            separator();
+            if (value == null) {
+                text.append("\\N");
+                return this;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\' -> text.append("\\\\");
+                    case '\t' -> text.append("\\t");
+                    case '\n' -> text.append("\\n");
+                    case '\r' -> text.append("\\r");
+                    default -> text.append(c);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
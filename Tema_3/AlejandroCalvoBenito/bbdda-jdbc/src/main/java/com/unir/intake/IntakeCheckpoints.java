@@ -0,0 +1,128 @@
+package com.unir.intake;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Puntos de control de la carga de ficheros CSV, guardados en la tabla intake_checkpoint de MySQL.
+ * Por cada fichero se guarda cuántas lineas de datos se han confirmado ya en la base de datos.
+ *
+ * El punto de control se actualiza en la misma transacción que los datos (ver {@link BulkUpsertEngine#setBeforeCommit}),
+ * así que nunca indica más lineas de las que realmente se han confirmado.
+ * Si la carga falla, al volver a lanzarla se saltan esas lineas y se continúa desde ahí.
+ * Como las sentencias son upserts, volver a cargar alguna linea no tiene efecto.
+ *
+ * También se guardan el tamaño y la fecha de modificación del fichero: si el fichero ha cambiado, se carga desde el principio.
+ */
+@Slf4j
+public class IntakeCheckpoints implements AutoCloseable {
+
+    private static final TableMapping<Checkpoint> CHECKPOINTS = new TableMapping<>(
+            "intake_checkpoint",
+            List.of("file"),
+            List.of("rows_done", "file_size", "file_modified"),
+            (statement, checkpoint) -> {
+                statement.setString(1, checkpoint.file());
+                statement.setLong(2, checkpoint.rows());
+                statement.setLong(3, checkpoint.size());
+                statement.setLong(4, checkpoint.modified());
+            },
+            checkpoint -> 0);
+
+    private final PreparedStatement select;
+    private final PreparedStatement save;
+    private final PreparedStatement delete;
+
+    /**
+     * Constructor de la clase. Crea la tabla de control si no existe.
+     * OJO! En MySQL CREATE TABLE hace commit implícito: hay que crearlo antes de empezar la transacción de la carga.
+     * @param connection - Conexión a MySQL, la misma que hace la carga
+     * @throws SQLException - Error al crear la tabla o preparar las sentencias
+     */
+    public IntakeCheckpoints(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS intake_checkpoint ("
+                    + "file VARCHAR(255) NOT NULL PRIMARY KEY, "
+                    + "rows_done BIGINT NOT NULL, "
+                    + "file_size BIGINT NOT NULL, "
+                    + "file_modified BIGINT NOT NULL, "
+                    + "updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP)");
+        }
+        this.select = connection.prepareStatement(
+                "SELECT rows_done, file_size, file_modified FROM intake_checkpoint WHERE file = ?");
+        this.save = connection.prepareStatement(SqlDialect.MYSQL.upsertSql(CHECKPOINTS));
+        this.delete = connection.prepareStatement("DELETE FROM intake_checkpoint WHERE file = ?");
+    }
+
+    /**
+     * Devuelve el número de lineas del fichero que ya están cargadas.
+     * @param file - Ruta del fichero
+     * @return - Lineas de datos a saltar. 0 si no hay punto de control o el fichero ha cambiado
+     * @throws SQLException - Error al consultar la tabla de control
+     */
+    public long resume(String file) throws SQLException {
+        select.setString(1, file);
+        try (ResultSet resultSet = select.executeQuery()) {
+            if (!resultSet.next()) {
+                return 0;
+            }
+            Checkpoint current = checkpoint(file, 0);
+            if (resultSet.getLong("file_size") != current.size() || resultSet.getLong("file_modified") != current.modified()) {
+                log.warn("El fichero {} ha cambiado desde la última carga. Se carga desde el principio", file);
+                return 0;
+            }
+            long rows = resultSet.getLong("rows_done");
+            log.info("Reanudando la carga de {} a partir de la linea {}", file, rows);
+            return rows;
+        }
+    }
+
+    /**
+     * Guarda el número de lineas cargadas de un fichero. El commit lo hace quien lo utiliza, junto con los datos.
+     * @param file - Ruta del fichero
+     * @param rows - Lineas de datos cargadas desde el principio del fichero
+     * @throws SQLException - Error al escribir en la tabla de control
+     */
+    public void save(String file, long rows) throws SQLException {
+        CHECKPOINTS.getBinder().bind(save, checkpoint(file, rows));
+        save.executeUpdate();
+    }
+
+    /**
+     * Borra el punto de control de un fichero, para que la siguiente carga empiece desde el principio.
+     * @param file - Ruta del fichero
+     * @throws SQLException - Error al escribir en la tabla de control
+     */
+    public void clear(String file) throws SQLException {
+        delete.setString(1, file);
+        delete.executeUpdate();
+    }
+
+    private static Checkpoint checkpoint(String file, long rows) {
+        try {
+            Path path = Path.of(file);
+            return new Checkpoint(file, rows, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+        } catch (IOException e) {
+            throw new RuntimeException("Error al leer el fichero CSV " + file, e);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try (select; save; delete) {
+            // Se cierran las sentencias
+        }
+    }
+
+    private record Checkpoint(String file, long rows, long size, long modified) {
+    }
+}
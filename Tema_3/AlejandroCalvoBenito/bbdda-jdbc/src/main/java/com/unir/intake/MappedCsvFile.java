@@ -0,0 +1,184 @@
+package com.unir.intake;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lectura de ficheros CSV grandes mediante memoria mapeada (FileChannel.map).
+ * El fichero se divide en trozos que empiezan y acaban en un salto de linea, de modo que cada trozo
+ * se puede leer desde un hilo distinto sin coordinarse con los demás.
+ *
+ * Los bytes se decodifican como UTF-8 directamente desde la memoria mapeada, sin pasar por un Reader.
+ * Así la lectura de un fichero de varios GB queda limitada por el disco y no por un único hilo decodificando.
+ */
+public final class MappedCsvFile {
+
+    // Tamaño máximo de cada trozo. Un MappedByteBuffer no puede pasar de 2 GB
+    private static final long TROZO_MAX = 1L << 30;
+
+    // Bytes que se leen cada vez al buscar un salto de linea
+    private static final int VENTANA = 4096;
+
+    private MappedCsvFile() {
+    }
+
+    /**
+     * Divide un fichero CSV en trozos. La primera linea, con los nombres de las columnas, no se incluye.
+     * @param file - Ruta del fichero
+     * @param parts - Número de trozos deseado. Puede haber más si el fichero es muy grande, o menos si es muy pequeño
+     * @return - Trozos del fichero, en orden
+     * @throws IOException - Error al abrir o mapear el fichero
+     */
+    public static List<Chunk> split(String file, int parts) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(file), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long first = nextLine(channel, 0);
+            int count = (int) Math.max(parts, (size - first + TROZO_MAX - 1) / TROZO_MAX);
+
+            List<Chunk> chunks = new ArrayList<>(count);
+            long start = first;
+            for (int i = 1; i <= count; i++) {
+                // El trozo acaba en el primer salto de linea a partir de su parte proporcional del fichero
+                long end = i == count ? size : Math.max(start, nextLine(channel, first + (size - first) * i / count - 1));
+                if (end > start) {
+                    // La memoria mapeada sigue siendo válida después de cerrar el canal
+                    chunks.add(new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), start));
+                }
+                start = end;
+            }
+            return chunks;
+        }
+    }
+
+    /**
+     * @return - Posición siguiente al primer salto de linea a partir de position, o el tamaño del fichero si no hay más
+     */
+    private static long nextLine(FileChannel channel, long position) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(VENTANA);
+        long size = channel.size();
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Trozo de un fichero CSV. Solo lo debe leer un hilo.
+     */
+    public static final class Chunk {
+
+        private final MappedByteBuffer bytes;
+        private final long offset;
+        private final CsvLine line = new CsvLine();
+        private char[] chars = new char[256];
+
+        private Chunk(MappedByteBuffer bytes, long offset) {
+            this.bytes = bytes;
+            this.offset = offset;
+        }
+
+        /**
+         * @return - Posición del trozo dentro del fichero, en bytes
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return - Tamaño del trozo en bytes
+         */
+        public int size() {
+            return bytes.capacity();
+        }
+
+        /**
+         * Avanza a la siguiente linea del trozo. Las lineas vacías se saltan.
+         * @return - La linea, o null si se ha llegado al final. Es siempre el mismo objeto
+         */
+        public CsvLine next() {
+            int length = 0;
+            while (bytes.hasRemaining()) {
+                byte b = bytes.get();
+                if (b == '\n') {
+                    if (length > 0 && chars[length - 1] == '\r') {
+                        length--;
+                    }
+                    if (length > 0) {
+                        line.set(chars, 0, length);
+                        return line;
+                    }
+                    continue;
+                }
+                if (length + 2 > chars.length) {
+                    chars = Arrays.copyOf(chars, chars.length * 2);
+                }
+                if (b >= 0) {
+                    // ASCII: el caso habitual
+                    chars[length++] = (char) b;
+                } else {
+                    length += Character.toChars(decode(b), chars, length);
+                }
+            }
+            // Última linea sin salto de linea al final
+            if (length > 0 && chars[length - 1] == '\r') {
+                length--;
+            }
+            if (length == 0) {
+                return null;
+            }
+            line.set(chars, 0, length);
+            return line;
+        }
+
+        /**
+         * Decodifica un caracter UTF-8 de varios bytes.
+         * @param first - Primer byte, ya leído
+         * @return - Código Unicode del caracter
+         */
+        private int decode(byte first) {
+            int codePoint;
+            int extra;
+            if ((first & 0xE0) == 0xC0) {
+                codePoint = first & 0x1F;
+                extra = 1;
+            } else if ((first & 0xF0) == 0xE0) {
+                codePoint = first & 0x0F;
+                extra = 2;
+            } else if ((first & 0xF8) == 0xF0) {
+                codePoint = first & 0x07;
+                extra = 3;
+            } else {
+                throw malformed();
+            }
+            for (int i = 0; i < extra; i++) {
+                if (!bytes.hasRemaining()) {
+                    throw malformed();
+                }
+                byte next = bytes.get();
+                if ((next & 0xC0) != 0x80) {
+                    throw malformed();
+                }
+                codePoint = (codePoint << 6) | (next & 0x3F);
+            }
+            return codePoint;
+        }
+
+        private IllegalArgumentException malformed() {
+            return new IllegalArgumentException("UTF-8 no válido en el byte " + (offset + bytes.position()));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.unir.intake;
+
+import com.unir.model.MySqlDepartment;
+import com.unir.model.MySqlDeptEmpt;
+import com.unir.model.MySqlEmployee;
+
+import java.util.List;
+
+/**
+ * Mapeos de los registros del schema employees de MySQL sobre sus tablas.
+ */
+public final class Mappings {
+
+    private static final List<String> EMPLOYEES_KEYS = List.of("emp_no");
+    private static final List<String> EMPLOYEES_VALUES = List.of("first_name", "last_name", "gender", "hire_date", "birth_date");
+    private static final List<String> DEPARTMENTS_KEYS = List.of("dept_no");
+    private static final List<String> DEPARTMENTS_VALUES = List.of("dept_name");
+    private static final List<String> DEPT_EMP_KEYS = List.of("emp_no", "dept_no");
+    private static final List<String> DEPT_EMP_VALUES = List.of("from_date", "to_date");
+
+    public static final TableMapping<MySqlEmployee> EMPLOYEES = new TableMapping<>(
+            "employees",
+            EMPLOYEES_KEYS,
+            EMPLOYEES_VALUES,
+            (statement, employee) -> {
+                statement.setInt(1, employee.getEmployeeId());
+                statement.setString(2, employee.getFirstName());
+                statement.setString(3, employee.getLastName());
+                statement.setString(4, employee.getGender());
+                statement.setDate(5, employee.getHireDate());
+                statement.setDate(6, employee.getBirthDate());
+            },
+            // emp_no (4) + nombre y apellido + gender (1) + dos fechas (3 cada una)
+            employee -> 4 + employee.getFirstName().length() + employee.getLastName().length() + 1 + 3 + 3);
+
+    public static final TableMapping<MySqlDepartment> DEPARTMENTS = new TableMapping<>(
+            "departments",
+            DEPARTMENTS_KEYS,
+            DEPARTMENTS_VALUES,
+            (statement, department) -> {
+                statement.setString(1, department.getDptNo());
+                statement.setString(2, department.getDptName());
+            },
+            // dept_no (4) + dept_name
+            department -> 4 + department.getDptName().length());
+
+    public static final TableMapping<MySqlDeptEmpt> DEPT_EMP = new TableMapping<>(
+            "dept_emp",
+            DEPT_EMP_KEYS,
+            DEPT_EMP_VALUES,
+            (statement, deptEmpt) -> {
+                statement.setInt(1, deptEmpt.getEmpNo());
+                statement.setString(2, deptEmpt.getDeptNo());
+                statement.setDate(3, deptEmpt.getFromDate());
+                statement.setDate(4, deptEmpt.getToDate());
+            },
+            // emp_no (4) + dept_no (4) + dos fechas (3 cada una)
+            deptEmpt -> 4 + 4 + 3 + 3);
+
+    /*
+     * Mapeos directos desde las lineas del CSV: cada campo se convierte y se enlaza en la sentencia sin crear el registro.
+     * Mismo orden de campos que los ficheros (ver {@link CsvSource}). El tamaño de la fila es el de la linea de texto.
+     */
+
+    public static final TableMapping<CsvLine> EMPLOYEES_CSV = new TableMapping<>(
+            "employees",
+            EMPLOYEES_KEYS,
+            EMPLOYEES_VALUES,
+            (statement, line) -> {
+                statement.setInt(1, line.expect(6).getInt(0));
+                statement.setString(2, line.getString(1));
+                statement.setString(3, line.getString(2));
+                statement.setString(4, line.getString(3));
+                statement.setDate(5, line.getDate(4));
+                statement.setDate(6, line.getDate(5));
+            },
+            CsvLine::length);
+
+    public static final TableMapping<CsvLine> DEPARTMENTS_CSV = new TableMapping<>(
+            "departments",
+            DEPARTMENTS_KEYS,
+            DEPARTMENTS_VALUES,
+            (statement, line) -> {
+                statement.setString(1, line.expect(2).getString(0));
+                statement.setString(2, line.getString(1));
+            },
+            CsvLine::length);
+
+    public static final TableMapping<CsvLine> DEPT_EMP_CSV = new TableMapping<>(
+            "dept_emp",
+            DEPT_EMP_KEYS,
+            DEPT_EMP_VALUES,
+            (statement, line) -> {
+                statement.setInt(1, line.expect(4).getInt(0));
+                statement.setString(2, line.getString(1));
+                statement.setDate(3, line.getDate(2));
+                statement.setDate(4, line.getDate(3));
+            },
+            CsvLine::length);
+
+    /*
+     * Formato de texto de cada tabla para la carga rápida (LOAD DATA). Mismo orden de columnas que los mapeos.
+     */
+
+    public static final FastLoader.RowFormat<MySqlEmployee> EMPLOYEES_FORMAT = (employee, line) -> line
+            .add(employee.getEmployeeId())
+            .add(employee.getFirstName())
+            .add(employee.getLastName())
+            .add(employee.getGender())
+            .add(employee.getHireDate())
+            .add(employee.getBirthDate());
+
+    public static final FastLoader.RowFormat<MySqlDepartment> DEPARTMENTS_FORMAT = (department, line) -> line
+            .add(department.getDptNo())
+            .add(department.getDptName());
+
+    public static final FastLoader.RowFormat<MySqlDeptEmpt> DEPT_EMP_FORMAT = (deptEmpt, line) -> line
+            .add(deptEmpt.getEmpNo())
+            .add(deptEmpt.getDeptNo())
+            .add(deptEmpt.getFromDate())
+            .add(deptEmpt.getToDate());
+
+    private Mappings() {
+    }
+}
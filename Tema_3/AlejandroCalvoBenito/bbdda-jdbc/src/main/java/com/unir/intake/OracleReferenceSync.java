@@ -0,0 +1,204 @@
+package com.unir.intake;
+
+import com.unir.model.OracleCountry;
+import com.unir.model.OracleRegion;
+import lombok.extern.slf4j.Slf4j;
+import oracle.jdbc.OracleConnection;
+import oracle.jdbc.OracleTypes;
+
+import java.sql.Array;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Sincronización por lotes de las tablas de referencia de Oracle (regions y countries).
+ *
+ * Cada lote viaja en una única llamada: las columnas se envían como colecciones (array binding) a un bloque PL/SQL
+ * que hace un MERGE por fila con FORALL, es decir, todas las filas en una sola ejecución dentro del servidor.
+ * El bloque devuelve además las claves que ya existían antes del MERGE (bloqueadas con FOR UPDATE, para que nadie
+ * las borre entre medias), y con ellas se sabe si cada fila se ha insertado o actualizado.
+ *
+ * Se usan los tipos de colección que trae Oracle (SYS.ODCINUMBERLIST y SYS.ODCIVARCHAR2LIST),
+ * así que no hace falta crear tipos ni tablas temporales en el esquema.
+ * El commit lo hace quien lo utiliza (con autocommit, cada lote se confirma por separado).
+ */
+@Slf4j
+public class OracleReferenceSync implements AutoCloseable {
+
+    // Filas por llamada. Las colecciones ODCI admiten hasta 32767 elementos
+    private static final int LOTE = 1000;
+
+    private static final String NUMEROS = "SYS.ODCINUMBERLIST";
+    private static final String TEXTOS = "SYS.ODCIVARCHAR2LIST";
+
+    private static final String MERGE_REGIONS = """
+            DECLARE
+                ids SYS.ODCINUMBERLIST := ?;
+                names SYS.ODCIVARCHAR2LIST := ?;
+                existing SYS.ODCINUMBERLIST;
+            BEGIN
+                SELECT region_id BULK COLLECT INTO existing FROM regions
+                 WHERE region_id IN (SELECT column_value FROM TABLE(ids)) FOR UPDATE;
+                FORALL i IN 1 .. ids.COUNT
+                    MERGE INTO regions t
+                    USING (SELECT ids(i) AS region_id, names(i) AS region_name FROM dual) s
+                    ON (t.region_id = s.region_id)
+                    WHEN MATCHED THEN UPDATE SET t.region_name = s.region_name
+                    WHEN NOT MATCHED THEN INSERT (region_id, region_name) VALUES (s.region_id, s.region_name);
+                ? := existing;
+            END;""";
+
+    private static final String MERGE_COUNTRIES = """
+            DECLARE
+                ids SYS.ODCIVARCHAR2LIST := ?;
+                regions SYS.ODCINUMBERLIST := ?;
+                names SYS.ODCIVARCHAR2LIST := ?;
+                existing SYS.ODCIVARCHAR2LIST;
+            BEGIN
+                SELECT country_id BULK COLLECT INTO existing FROM countries
+                 WHERE country_id IN (SELECT column_value FROM TABLE(ids)) FOR UPDATE;
+                FORALL i IN 1 .. ids.COUNT
+                    MERGE INTO countries t
+                    USING (SELECT ids(i) AS country_id, regions(i) AS region_id, names(i) AS country_name FROM dual) s
+                    ON (t.country_id = s.country_id)
+                    WHEN MATCHED THEN UPDATE SET t.region_id = s.region_id, t.country_name = s.country_name
+                    WHEN NOT MATCHED THEN INSERT (country_id, region_id, country_name)
+                        VALUES (s.country_id, s.region_id, s.country_name);
+                ? := existing;
+            END;""";
+
+    private final OracleConnection connection;
+    private final Map<String, CallableStatement> statements = new HashMap<>();
+
+    /**
+     * Constructor de la clase.
+     * @param connection - Conexión a Oracle. Las sentencias se preparan una vez y se cierran con close()
+     * @throws SQLException - Si la conexión no es del driver de Oracle
+     */
+    public OracleReferenceSync(Connection connection) throws SQLException {
+        this.connection = connection.unwrap(OracleConnection.class);
+    }
+
+    /**
+     * Inserta o actualiza regiones.
+     * @param regions - Regiones
+     * @return - Resultado de cada región, en el mismo orden
+     * @throws SQLException - Error al ejecutar algún lote. Los lotes anteriores no se deshacen aquí
+     */
+    public List<Outcome> upsertRegions(List<OracleRegion> regions) throws SQLException {
+        return merge("mergeRegions", MERGE_REGIONS, NUMEROS, regions, OracleRegion::getRegionId,
+                existing -> ((Number) existing).intValue(),
+                batch -> new Array[]{
+                        connection.createOracleArray(NUMEROS, column(batch, OracleRegion::getRegionId)),
+                        connection.createOracleArray(TEXTOS, column(batch, OracleRegion::getRegionName))
+                });
+    }
+
+    /**
+     * Inserta o actualiza países.
+     * @param countries - Países
+     * @return - Resultado de cada país, en el mismo orden
+     * @throws SQLException - Error al ejecutar algún lote. Los lotes anteriores no se deshacen aquí
+     */
+    public List<Outcome> upsertCountries(List<OracleCountry> countries) throws SQLException {
+        return merge("mergeCountries", MERGE_COUNTRIES, TEXTOS, countries, OracleCountry::getCountryId,
+                existing -> existing,
+                batch -> new Array[]{
+                        connection.createOracleArray(TEXTOS, column(batch, OracleCountry::getCountryId)),
+                        connection.createOracleArray(NUMEROS, column(batch, OracleCountry::getRegionId)),
+                        connection.createOracleArray(TEXTOS, column(batch, OracleCountry::getCountryName))
+                });
+    }
+
+    /**
+     * Ejecuta el bloque por lotes y traduce las claves que ya existían en el resultado de cada fila.
+     * @param keyType - Tipo de la colección con las claves existentes (último parámetro del bloque)
+     * @param key - Clave de cada fila
+     * @param fromDb - Convierte una clave devuelta por Oracle al tipo de la clave de la fila
+     * @param columns - Colecciones con las columnas de un lote, en el orden de los parámetros del bloque
+     */
+    private <T> List<Outcome> merge(String name, String sql, String keyType, List<T> rows,
+                                    Function<T, Object> key, Function<Object, Object> fromDb,
+                                    Columns<T> columns) throws SQLException {
+
+        CallableStatement statement = statements.get(name);
+        if (statement == null) {
+            statement = connection.prepareCall(sql);
+            statements.put(name, statement);
+        }
+
+        List<Outcome> outcomes = new ArrayList<>(rows.size());
+        int inserted = 0;
+        for (int from = 0; from < rows.size(); from += LOTE) {
+            List<T> batch = rows.subList(from, Math.min(rows.size(), from + LOTE));
+            Array[] arrays = columns.of(batch);
+            for (int i = 0; i < arrays.length; i++) {
+                statement.setArray(i + 1, arrays[i]);
+            }
+            int out = arrays.length + 1;
+            statement.registerOutParameter(out, OracleTypes.ARRAY, keyType);
+            statement.execute();
+
+            Set<Object> existing = new HashSet<>();
+            Array result = statement.getArray(out);
+            for (Object value : (Object[]) result.getArray()) {
+                existing.add(fromDb.apply(value));
+            }
+            result.free();
+            for (Array array : arrays) {
+                array.free();
+            }
+
+            // Una clave repetida en el lote se inserta la primera vez y se actualiza las siguientes
+            for (T row : batch) {
+                if (existing.add(key.apply(row))) {
+                    outcomes.add(Outcome.INSERTED);
+                    inserted++;
+                } else {
+                    outcomes.add(Outcome.UPDATED);
+                }
+            }
+        }
+
+        log.debug("{}: {} filas insertadas y {} actualizadas en {} llamadas",
+                name, inserted, rows.size() - inserted, (rows.size() + LOTE - 1) / LOTE);
+        return outcomes;
+    }
+
+    private static <T> Object[] column(List<T> batch, Function<T, Object> value) {
+        return batch.stream().map(value).toArray();
+    }
+
+    /**
+     * Cierra las sentencias. La conexión no se cierra.
+     * @throws SQLException - Error al cerrar alguna sentencia
+     */
+    @Override
+    public void close() throws SQLException {
+        for (CallableStatement statement : statements.values()) {
+            statement.close();
+        }
+        statements.clear();
+    }
+
+    /**
+     * Resultado del upsert de una fila.
+     */
+    public enum Outcome {
+        INSERTED,
+        UPDATED
+    }
+
+    @FunctionalInterface
+    private interface Columns<T> {
+        Array[] of(List<T> batch) throws SQLException;
+    }
+}
@@ -0,0 +1,302 @@
+package com.unir.intake;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Carga en paralelo de un fichero CSV.
+ * Con {@link #load} el fichero se lee una única vez (ver {@link CsvPipeline}) y cada registro se envía a una partición según su clave.
+ * Cada partición la escribe un hilo con su propia conexión, su propia sentencia de upsert y su propia transacción.
+ *
+ * Las particiones agrupan rangos de claves consecutivas, de modo que dos hilos nunca escriben la misma fila
+ * y cada uno inserta en zonas distintas del índice.
+ * Con {@link #loadMapped} la lectura también es paralela: cada hilo lee su propio trozo del fichero.
+ *
+ * OJO! Cada partición hace commit por separado, según el {@link CommitPolicy} y al terminar.
+ * Si una falla, las demás pueden haber confirmado ya sus filas.
+ * Como las sentencias son upserts, basta con volver a lanzar la carga.
+ */
+@Slf4j
+public class ParallelLoader {
+
+    // Claves consecutivas que van a parar a la misma partición
+    private static final int RANGO = 1000;
+
+    // Número de registros que viajan juntos por la cola de cada partición
+    private static final int BLOQUE = 500;
+
+    private final ConnectionFactory connections;
+    private final SqlDialect dialect;
+    private final int workers;
+    private final Supplier<AdaptiveBatchSize> batchSizes;
+    private final CommitPolicy commitPolicy;
+    private final int queueCapacity;
+
+    /**
+     * Constructor de la clase.
+     * @param connections - Origen de las conexiones, una por partición
+     * @param dialect - Dialecto SQL de la base de datos
+     * @param workers - Número de particiones (hilos y conexiones)
+     * @param batchSizes - Crea el tamaño de lote de cada partición. Cada una ajusta el suyo
+     * @param commitPolicy - Cuándo hacer commit dentro de cada partición
+     * @param queueCapacity - Número de bloques de registros en memoria por partición
+     */
+    public ParallelLoader(ConnectionFactory connections, SqlDialect dialect, int workers,
+                          Supplier<AdaptiveBatchSize> batchSizes, CommitPolicy commitPolicy, int queueCapacity) {
+        this.connections = connections;
+        this.dialect = dialect;
+        this.workers = workers;
+        this.batchSizes = batchSizes;
+        this.commitPolicy = commitPolicy;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Carga un fichero CSV en paralelo. Vuelve cuando todas las particiones han hecho commit.
+     * @param source - Fichero CSV
+     * @param mapping - Tabla destino
+     * @param partitioner - Asigna una partición a cada registro
+     * @return - Número de registros cargados
+     * @throws SQLException - Error al escribir en alguna de las particiones
+     */
+    public <T> long load(CsvSource<T> source, TableMapping<T> mapping, Partitioner<T> partitioner) throws SQLException {
+
+        List<T> end = new ArrayList<>(0);
+        List<BlockingQueue<List<T>>> queues = new ArrayList<>(workers);
+        List<List<T>> chunks = new ArrayList<>(workers);
+        List<Future<Long>> results = new ArrayList<>(workers);
+        // Primer error de una partición. Su Future no termina hasta que recibe el fin de la cola, así que no sirve para avisar
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            for (int i = 0; i < workers; i++) {
+                BlockingQueue<List<T>> queue = new ArrayBlockingQueue<>(queueCapacity);
+                queues.add(queue);
+                chunks.add(new ArrayList<>(BLOQUE));
+                results.add(executor.submit(() -> write(queue, end, mapping, failure)));
+            }
+
+            // El hilo actual reparte los registros leídos entre las particiones
+            try {
+                new CsvPipeline<>(source, queueCapacity).run(row -> {
+                    if (failure.get() != null) {
+                        // Una partición ha fallado. Dejamos de leer el fichero
+                        throw new SQLException("Una partición de " + mapping.getTable() + " ha fallado", failure.get());
+                    }
+                    int partition = partitioner.partition(row, workers);
+                    List<T> chunk = chunks.get(partition);
+                    chunk.add(row);
+                    if (chunk.size() == BLOQUE) {
+                        put(queues.get(partition), chunk);
+                        chunks.set(partition, new ArrayList<>(BLOQUE));
+                    }
+                });
+            } finally {
+                for (int i = 0; i < workers; i++) {
+                    // Si ha habido un error, los registros pendientes ya no se envían
+                    if (!chunks.get(i).isEmpty() && failure.get() == null) {
+                        put(queues.get(i), chunks.get(i));
+                    }
+                    put(queues.get(i), end);
+                }
+            }
+
+            long rows = await(results, source.getFile());
+            log.info("Tabla {} cargada en paralelo: {} registros en {} particiones", mapping.getTable(), rows, workers);
+            return rows;
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Carga un fichero CSV en paralelo leyéndolo con memoria mapeada (ver {@link MappedCsvFile}).
+     * El fichero se divide en tantos trozos como particiones, y cada hilo lee su trozo y escribe sus lineas
+     * directamente en la sentencia, sin crear registros ni repartirlos entre colas.
+     *
+     * No se reparte por clave: cada trozo contiene lineas consecutivas del fichero,
+     * que en los ficheros del schema employees vienen ordenadas por emp_no.
+     *
+     * @param file - Ruta del fichero CSV
+     * @param mapping - Tabla destino, con los campos tomados de la linea (por ejemplo {@link Mappings#EMPLOYEES_CSV})
+     * @return - Número de registros cargados
+     * @throws SQLException - Error al escribir alguno de los trozos
+     */
+    public long loadMapped(String file, TableMapping<CsvLine> mapping) throws SQLException {
+
+        List<MappedCsvFile.Chunk> chunks;
+        try {
+            chunks = MappedCsvFile.split(file, workers);
+        } catch (IOException e) {
+            throw new RuntimeException("Error al leer el fichero CSV " + file, e);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Long>> results = new ArrayList<>(chunks.size());
+            for (MappedCsvFile.Chunk chunk : chunks) {
+                results.add(executor.submit(() -> write(chunk, mapping)));
+            }
+
+            long rows = await(results, file);
+            log.info("Tabla {} cargada en paralelo desde memoria mapeada: {} registros en {} trozos",
+                    mapping.getTable(), rows, chunks.size());
+            return rows;
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Espera a que terminen todas las particiones.
+     * @return - Número total de registros cargados
+     */
+    private static long await(List<Future<Long>> results, String file) throws SQLException {
+        try {
+            long rows = 0;
+            for (Future<Long> result : results) {
+                rows += result.get();
+            }
+            return rows;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Carga de " + file + " interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Escritura de una partición. Se ejecuta en su propio hilo y con su propia conexión.
+     */
+    private <T> long write(BlockingQueue<List<T>> queue, List<T> end, TableMapping<T> mapping,
+                           AtomicReference<Throwable> failure) throws SQLException, InterruptedException {
+        try (Connection connection = connections.open()) {
+            connection.setAutoCommit(false);
+
+            BulkUpsertEngine<T> engine = new BulkUpsertEngine<>(connection, dialect, mapping, batchSizes.get(), commitPolicy);
+            try {
+                // Si falla un lote, el motor no envía nada más al cerrarse y no se llega al commit
+                try (engine) {
+                    List<T> chunk;
+                    while ((chunk = queue.take()) != end) {
+                        for (T row : chunk) {
+                            engine.add(row);
+                        }
+                    }
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                rollback(connection, e);
+                throw e;
+            }
+            return engine.getTotal();
+
+        } catch (SQLException | RuntimeException e) {
+            // Avisamos al reparto para que deje de leer el fichero
+            failure.compareAndSet(null, e);
+            // Seguimos vaciando la cola para que el reparto no se quede bloqueado esperando hueco
+            while (queue.take() != end) {
+                // Se descartan los registros
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Escritura de un trozo de fichero mapeado. Se ejecuta en su propio hilo y con su propia conexión.
+     */
+    private long write(MappedCsvFile.Chunk chunk, TableMapping<CsvLine> mapping) throws SQLException {
+        try (Connection connection = connections.open()) {
+            connection.setAutoCommit(false);
+
+            BulkUpsertEngine<CsvLine> engine = new BulkUpsertEngine<>(connection, dialect, mapping, batchSizes.get(), commitPolicy);
+            try {
+                try (engine) {
+                    CsvLine line;
+                    while ((line = chunk.next()) != null) {
+                        engine.add(line);
+                    }
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                rollback(connection, e);
+                throw e;
+            }
+            log.debug("Trozo de {} bytes desde el byte {} cargado en {}: {} registros",
+                    chunk.size(), chunk.getOffset(), mapping.getTable(), engine.getTotal());
+            return engine.getTotal();
+        }
+    }
+
+    /**
+     * Deshace lo que la partición no ha confirmado. Un error en el rollback no oculta el error de la carga.
+     * @param connection - Conexión de la partición
+     * @param cause - Error de la carga
+     */
+    private static void rollback(Connection connection, Exception cause) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private static <T> void put(BlockingQueue<List<T>> queue, List<T> chunk) {
+        try {
+            queue.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reparto interrumpido", e);
+        }
+    }
+
+    /**
+     * Particiona por rangos de una clave numérica: las claves [0, RANGO) a una partición, [RANGO, 2*RANGO) a la siguiente...
+     * @param key - Clave numérica del registro (emp_no)
+     * @return - Particionador
+     */
+    public static <T> Partitioner<T> byRange(ToIntFunction<T> key) {
+        return (row, partitions) -> Math.floorMod(key.applyAsInt(row) / RANGO, partitions);
+    }
+
+    /**
+     * Particiona por el hash de una clave de texto. Útil para tablas pequeñas como departments.
+     * @param key - Clave de texto del registro (dept_no)
+     * @return - Particionador
+     */
+    public static <T> Partitioner<T> byHash(Function<T, String> key) {
+        return (row, partitions) -> Math.floorMod(key.apply(row).hashCode(), partitions);
+    }
+
+    @FunctionalInterface
+    public interface Partitioner<T> {
+        int partition(T row, int partitions);
+    }
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+}
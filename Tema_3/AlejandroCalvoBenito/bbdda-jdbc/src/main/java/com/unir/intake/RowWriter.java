@@ -0,0 +1,27 @@
+package com.unir.intake;
+
+import java.sql.SQLException;
+
+/**
+ * Destino de los registros de una carga: recibe las filas de una en una y las escribe en la base de datos.
+ * Al cerrarlo se escriben las filas pendientes.
+ *
+ * @param <T> - Tipo de registro
+ */
+public interface RowWriter<T> extends AutoCloseable {
+
+    /**
+     * Añade una fila. Puede quedarse pendiente hasta completar un lote.
+     * @param row - Registro
+     * @throws SQLException - Error al escribir en la base de datos
+     */
+    void add(T row) throws SQLException;
+
+    /**
+     * @return - Número de filas escritas hasta el momento
+     */
+    long getTotal();
+
+    @Override
+    void close() throws SQLException;
+}
@@ -0,0 +1,64 @@
+package com.unir.intake;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Genera la sentencia de upsert (insertar o actualizar) propia de cada base de datos.
+ * Con una única sentencia la base de datos resuelve si la fila existe, sin necesidad de un SELECT previo por registro.
+ */
+public enum SqlDialect {
+
+    /**
+     * INSERT ... ON DUPLICATE KEY UPDATE.
+     * Con rewriteBatchedStatements=true el driver agrupa el batch en un único INSERT multi-fila.
+     */
+    MYSQL {
+        @Override
+        public String upsertSql(TableMapping<?> mapping) {
+            List<String> columns = mapping.getColumns();
+            return "INSERT INTO " + mapping.getTable()
+                    + " (" + String.join(", ", columns) + ")"
+                    + " VALUES (" + placeholders(columns.size()) + ")"
+                    + " ON DUPLICATE KEY UPDATE "
+                    + mapping.getValueColumns().stream()
+                        .map(column -> column + " = VALUES(" + column + ")")
+                        .collect(Collectors.joining(", "));
+        }
+    },
+
+    /**
+     * MERGE contra una fila construida desde DUAL con los parámetros.
+     */
+    ORACLE {
+        @Override
+        public String upsertSql(TableMapping<?> mapping) {
+            List<String> columns = mapping.getColumns();
+            return "MERGE INTO " + mapping.getTable() + " t"
+                    + " USING (SELECT "
+                    + columns.stream().map(column -> "? AS " + column).collect(Collectors.joining(", "))
+                    + " FROM dual) s"
+                    + " ON (" + mapping.getKeyColumns().stream()
+                        .map(column -> "t." + column + " = s." + column)
+                        .collect(Collectors.joining(" AND ")) + ")"
+                    + " WHEN MATCHED THEN UPDATE SET "
+                    + mapping.getValueColumns().stream()
+                        .map(column -> "t." + column + " = s." + column)
+                        .collect(Collectors.joining(", "))
+                    + " WHEN NOT MATCHED THEN INSERT (" + String.join(", ", columns) + ")"
+                    + " VALUES (" + columns.stream().map(column -> "s." + column).collect(Collectors.joining(", ")) + ")";
+        }
+    };
+
+    /**
+     * Sentencia parametrizada que inserta la fila o la actualiza si ya existe su clave.
+     * @param mapping - Tabla y columnas
+     * @return - Sentencia SQL
+     */
+    public abstract String upsertSql(TableMapping<?> mapping);
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.unir.intake;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Describe como se vuelca un tipo de registro sobre una tabla.
+ * Las columnas clave identifican la fila (PRIMARY KEY) y las columnas de valor son las que se actualizan si ya existe.
+ *
+ * @param <T> - Tipo de registro (MySqlEmployee, MySqlDepartment...)
+ */
+@AllArgsConstructor
+@Getter
+public class TableMapping<T> {
+
+    private final String table;
+    private final List<String> keyColumns;
+    private final List<String> valueColumns;
+
+    /**
+     * Rellena los parámetros en el orden: columnas clave y después columnas de valor.
+     */
+    private final Binder<T> binder;
+
+    /**
+     * Estimación del tamaño en bytes de un registro, para poder hacer commit por volumen de datos.
+     */
+    private final RowSize<T> rowSize;
+
+    /**
+     * Todas las columnas de la tabla, en el mismo orden en el que el binder rellena los parámetros.
+     * @return - Columnas clave seguidas de columnas de valor
+     */
+    public List<String> getColumns() {
+        return Stream.concat(keyColumns.stream(), valueColumns.stream()).toList();
+    }
+
+    @FunctionalInterface
+    public interface Binder<T> {
+        void bind(PreparedStatement statement, T row) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface RowSize<T> {
+        int bytes(T row);
+    }
+}
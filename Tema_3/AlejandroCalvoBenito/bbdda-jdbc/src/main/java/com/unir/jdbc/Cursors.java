@@ -0,0 +1,56 @@
+package com.unir.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Sentencias de lectura con cursor, para recorrer tablas grandes con memoria constante.
+ *
+ * Por defecto, MySQL Connector/J descarga el resultado entero en memoria antes de que next() devuelva la primera fila.
+ * Con un tamaño de bloque (fetch size) las filas se piden al servidor en bloques según se recorren:
+ * <ul>
+ *     <li>MySQL, fetchSize &gt; 0: cursor en el servidor. Requiere useCursorFetch=true en la conexión (ver ConnectionPool).</li>
+ *     <li>MySQL, {@link #STREAMING}: el servidor envía las filas una a una. Mientras no se cierre el ResultSet,
+ *     la conexión no se puede usar para ninguna otra consulta.</li>
+ *     <li>Oracle, fetchSize &gt; 0: filas que se traen en cada viaje (por defecto 10).</li>
+ * </ul>
+ * Las sentencias son de solo avance y solo lectura, que es lo que exigen los cursores de MySQL.
+ */
+public final class Cursors {
+
+    // Tamaño de bloque especial de MySQL Connector/J para leer las filas en streaming
+    public static final int STREAMING = Integer.MIN_VALUE;
+
+    private Cursors() {
+    }
+
+    /**
+     * Crea una sentencia de lectura con cursor.
+     * @param connection - Conexión a la base de datos
+     * @param fetchSize - Filas por bloque, o {@link #STREAMING} en MySQL
+     * @return - Sentencia. La cierra quien la usa
+     * @throws SQLException - Error al crear la sentencia
+     */
+    public static Statement open(Connection connection, int fetchSize) throws SQLException {
+        Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(fetchSize);
+        return statement;
+    }
+
+    /**
+     * Prepara una sentencia de lectura con cursor.
+     * @param connection - Conexión a la base de datos
+     * @param sql - Consulta
+     * @param fetchSize - Filas por bloque, o {@link #STREAMING} en MySQL
+     * @return - Sentencia preparada. La cierra quien la usa
+     * @throws SQLException - Error al preparar la sentencia
+     */
+    public static PreparedStatement prepare(Connection connection, String sql, int fetchSize) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(fetchSize);
+        return statement;
+    }
+}
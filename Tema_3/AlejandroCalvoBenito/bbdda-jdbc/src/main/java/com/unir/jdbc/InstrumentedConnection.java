@@ -0,0 +1,224 @@
+package com.unir.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * Envuelve una conexión para medir las sentencias que se ejecutan con ella (ver {@link SqlStats}).
+ *
+ * Se usan proxies dinámicos: la conexión, sus sentencias y sus ResultSet se sustituyen por objetos que implementan
+ * las mismas interfaces, delegan cada llamada en el original y, en las ejecuciones, miden el tiempo y cuentan las filas.
+ * Quien usa la conexión no nota la diferencia (unwrap sigue devolviendo el objeto del driver).
+ *
+ * La latencia es la de la llamada execute*, es decir, hasta que llega la primera parte del resultado.
+ * Las filas son las modificadas, o las leídas con next() en las consultas.
+ *
+ * OJO! Cada llamada pasa por reflexión, también cada next() del ResultSet. Es barato comparado con un viaje a la
+ * base de datos, pero no es gratis: por eso el pool solo instrumenta las conexiones si se activa (ver ConnectionPool).
+ */
+public final class InstrumentedConnection {
+
+    private static final Set<String> EJECUCIONES = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private InstrumentedConnection() {
+    }
+
+    /**
+     * @param connection - Conexión original
+     * @param stats - Dónde se acumulan las estadísticas
+     * @return - Conexión instrumentada. Al cerrarla se cierra la original
+     */
+    public static Connection wrap(Connection connection, SqlStats stats) {
+        ConnectionHandler handler = new ConnectionHandler(connection, stats);
+        handler.proxy = proxy(Connection.class, handler);
+        return handler.proxy;
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(InstrumentedConnection.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * Invoca el método original y, si falla, relanza la excepción original en lugar de InvocationTargetException.
+     */
+    private static Object delegate(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Conexión. Envuelve las sentencias que crea y lleva la cuenta de la última consulta para detectar N+1.
+     * Una conexión no se usa desde varios hilos a la vez, así que ese estado no se sincroniza.
+     */
+    private static final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final SqlStats stats;
+        private Connection proxy;
+
+        private SqlStats.Template lastQuery;
+        private int run;
+
+        private ConnectionHandler(Connection target, SqlStats stats) {
+            this.target = target;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = delegate(target, method, args);
+            return switch (method.getName()) {
+                // prepareStatement y prepareCall: la plantilla se calcula una sola vez, al preparar
+                case "prepareStatement", "prepareCall" -> wrapStatement(method, result, stats.template((String) args[0]));
+                case "createStatement" -> wrapStatement(method, result, null);
+                default -> result;
+            };
+        }
+
+        private Object wrapStatement(Method method, Object statement, SqlStats.Template template) {
+            return proxy(method.getReturnType(), new StatementHandler((Statement) statement, template, this));
+        }
+
+        /**
+         * Las consultas repetidas seguidas cuentan como posible N+1. Las modificaciones intermedias no cortan la serie
+         * (el SELECT COUNT(*) y después UPDATE o INSERT de cada fila es justo ese caso).
+         */
+        private void queried(SqlStats.Template template) {
+            if (template == lastQuery) {
+                run++;
+                if (run >= SqlStats.UMBRAL_N_MAS_1) {
+                    template.repeated(run);
+                }
+            } else {
+                lastQuery = template;
+                run = 1;
+            }
+        }
+    }
+
+    /**
+     * Statement, PreparedStatement o CallableStatement.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final ConnectionHandler connection;
+
+        // Plantilla de la sentencia preparada, o de la última ejecutada si es un Statement
+        private SqlStats.Template template;
+
+        private StatementHandler(Statement target, SqlStats.Template template, ConnectionHandler connection) {
+            this.target = target;
+            this.template = template;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            // Statement: el SQL llega con cada ejecución (o con addBatch)
+            if (args != null && args.length > 0 && args[0] instanceof String sql
+                    && (EJECUCIONES.contains(name) || name.equals("addBatch"))) {
+                template = connection.stats.template(sql);
+            }
+
+            if (!EJECUCIONES.contains(name) || template == null) {
+                return switch (name) {
+                    case "getResultSet" -> wrapResultSet((ResultSet) delegate(target, method, args));
+                    case "getConnection" -> connection.proxy;
+                    default -> delegate(target, method, args);
+                };
+            }
+
+            long start = System.nanoTime();
+            Object result = delegate(target, method, args);
+            long elapsed = System.nanoTime() - start;
+
+            long rows = switch (result) {
+                case Integer count -> Math.max(0, count);
+                case Long count -> Math.max(0, count);
+                case int[] counts -> sum(counts);
+                case long[] counts -> sum(counts);
+                // execute(): true si devuelve un ResultSet (las filas se cuentan al leerlo)
+                case Boolean resultSet when !resultSet -> Math.max(0, target.getUpdateCount());
+                case null, default -> 0;
+            };
+            template.executed(elapsed, rows);
+
+            if (name.equals("executeQuery") || Boolean.TRUE.equals(result)) {
+                connection.queried(template);
+            }
+            return result instanceof ResultSet resultSet ? wrapResultSet(resultSet) : result;
+        }
+
+        private ResultSet wrapResultSet(ResultSet resultSet) {
+            return resultSet == null || template == null ? resultSet : proxy(ResultSet.class, new ResultSetHandler(resultSet, template));
+        }
+
+        // Los lotes con SUCCESS_NO_INFO (-2) no dicen cuántas filas han modificado
+        private static long sum(int[] counts) {
+            long rows = 0;
+            for (int count : counts) {
+                rows += Math.max(0, count);
+            }
+            return rows;
+        }
+
+        private static long sum(long[] counts) {
+            long rows = 0;
+            for (long count : counts) {
+                rows += Math.max(0, count);
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * ResultSet. Cuenta las filas leídas y las suma a la plantilla al terminar de leer o al cerrar.
+     */
+    private static final class ResultSetHandler implements InvocationHandler {
+
+        private final ResultSet target;
+        private final SqlStats.Template template;
+        private long rows;
+
+        private ResultSetHandler(ResultSet target, SqlStats.Template template) {
+            this.target = target;
+            this.template = template;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = delegate(target, method, args);
+            switch (method.getName()) {
+                case "next" -> {
+                    if ((Boolean) result) {
+                        rows++;
+                    } else {
+                        flush();
+                    }
+                }
+                case "close" -> flush();
+                default -> {
+                }
+            }
+            return result;
+        }
+
+        private void flush() {
+            template.read(rows);
+            rows = 0;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.unir.jdbc;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Caché local de resultados de consultas, pensada para informes (agregados, recuentos) que se repiten mientras los datos no cambian.
+ *
+ * Cada resultado se guarda con la clave SQL + parámetros y con las tablas de las que depende.
+ * Si se superan las entradas máximas, se descarta la que lleva más tiempo sin usarse (LRU).
+ *
+ * OJO! La caché es local al proceso y no sabe nada de los cambios que se confirman desde otro proceso.
+ * La carga de datos (app.write.MySqlApplication) se lanza en su propia JVM, así que no puede invalidarla:
+ * los informes ven los datos que había al consultarlos por primera vez, hasta que termina el proceso de lectura.
+ * Solo quien modifique tablas desde la misma JVM debe llamar a {@link #invalidate(String)} después de hacer commit.
+ * Los resultados se comparten entre quienes hacen la misma consulta, así que los objetos deben ser inmutables.
+ */
+@Slf4j
+public class QueryCache {
+
+    // Resultados que se guardan como máximo
+    private static final int CAPACIDAD = 256;
+
+    private static final QueryCache SHARED = new QueryCache(CAPACIDAD);
+
+    private final Map<Key, Entry> entries;
+
+    // Se incrementa en cada invalidación. Un resultado leído mientras se invalidaba no se guarda
+    private long generation = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Constructor de la clase.
+     * @param capacity - Número máximo de resultados guardados
+     */
+    public QueryCache(int capacity) {
+        // accessOrder = true: el orden de iteración es del menos al más recientemente usado
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return - Caché compartida por todas las consultas del proceso
+     */
+    public static QueryCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Devuelve el resultado de una consulta, de la caché si está o de la base de datos si no.
+     * @param statements - Registro de sentencias de la conexión
+     * @param name - Nombre de la consulta en el registro
+     * @param sql - SQL de la consulta
+     * @param tables - Tablas que lee la consulta
+     * @param mapper - Convierte cada fila en un objeto
+     * @param params - Parámetros de la consulta, en orden
+     * @return - Filas del resultado. La lista no se puede modificar
+     * @throws SQLException - Error al ejecutar la consulta
+     */
+    public <T> List<T> query(StatementCache statements, String name, String sql, Set<String> tables,
+                             RowMapper<T> mapper, Object... params) throws SQLException {
+
+        Key key = new Key(sql, Arrays.asList(params.clone()));
+        long readGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                @SuppressWarnings("unchecked")
+                List<T> rows = (List<T>) entry.rows();
+                return rows;
+            }
+            misses++;
+            readGeneration = generation;
+        }
+
+        PreparedStatement statement = statements.get(name, sql);
+        for (int i = 0; i < params.length; i++) {
+            statement.setObject(i + 1, params[i]);
+        }
+        List<T> rows;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            rows = Collections.unmodifiableList(mapper.list(resultSet));
+        }
+
+        synchronized (this) {
+            if (generation == readGeneration) {
+                entries.put(key, new Entry(normalize(tables), rows));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Descarta los resultados que dependen de una tabla. Se llama después de confirmar cambios en ella desde este proceso.
+     * @param table - Nombre de la tabla
+     */
+    public synchronized void invalidate(String table) {
+        String normalized = table.toLowerCase(Locale.ROOT);
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.tables().contains(normalized));
+        generation++;
+        if (entries.size() < before) {
+            log.debug("Tabla {} modificada: {} resultados descartados de la caché", table, before - entries.size());
+        }
+    }
+
+    /**
+     * Descarta todos los resultados.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        generation++;
+    }
+
+    private static Set<String> normalize(Set<String> tables) {
+        return tables.stream().map(table -> table.toLowerCase(Locale.ROOT)).collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Caché de consultas: %d resultados, %d aciertos, %d fallos", entries.size(), hits, misses);
+    }
+
+    private record Key(String sql, List<Object> params) {
+    }
+
+    private record Entry(Set<String> tables, List<?> rows) {
+    }
+}
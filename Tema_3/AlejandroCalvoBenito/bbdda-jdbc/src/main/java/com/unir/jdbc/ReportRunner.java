@@ -0,0 +1,106 @@
+package com.unir.jdbc;
+
+import com.unir.config.ConnectionPool;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ejecuta consultas independientes a la vez, cada una en un hilo virtual y con su propia conexión del pool.
+ * Un informe de N consultas tarda lo que la más lenta, en lugar de la suma de todas.
+ *
+ * Cada consulta tiene su tiempo máximo. Si lo supera, su CompletableFuture termina con TimeoutException
+ * y, además, se corta la conexión (setNetworkTimeout) para que el hilo no siga esperando al servidor.
+ * El pool descarta las conexiones cortadas.
+ *
+ * Cuántas consultas llegan a la base de datos a la vez lo limita el tamaño del pool: el resto espera una conexión libre.
+ */
+@Slf4j
+public class ReportRunner implements AutoCloseable {
+
+    // Margen sobre el tiempo máximo antes de cortar la conexión, para que gane el timeout del CompletableFuture
+    private static final long MARGEN_MS = 1000;
+
+    private final ConnectionPool pool;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<CompletableFuture<?>> submitted = new ArrayList<>();
+
+    /**
+     * Constructor de la clase.
+     * @param pool - Pool del que se obtiene una conexión por consulta
+     */
+    public ReportRunner(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Lanza una consulta en segundo plano.
+     * @param name - Nombre de la consulta, para el log
+     * @param timeout - Tiempo máximo de la consulta, incluida la espera por una conexión
+     * @param query - Consulta. Recibe una conexión que se devuelve al pool al terminar
+     * @return - Resultado de la consulta
+     */
+    public <T> CompletableFuture<T> submit(String name, Duration timeout, Query<T> query) {
+        long start = System.nanoTime();
+        CompletableFuture<T> result = CompletableFuture.supplyAsync(() -> {
+            try (Connection connection = pool.getConnection()) {
+                connection.setNetworkTimeout(executor, (int) (timeout.toMillis() + MARGEN_MS));
+                return query.run(connection);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, executor).orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+        result.whenComplete((value, error) -> {
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            if (error == null) {
+                log.debug("Consulta {} terminada en {} ms", name, millis);
+            } else {
+                log.error("Consulta {} fallida tras {} ms", name, millis, error);
+            }
+        });
+        submitted.add(result);
+        return result;
+    }
+
+    /**
+     * Espera a que terminen todas las consultas lanzadas. Los fallos ya se han registrado en el log.
+     * @return - Número de consultas fallidas
+     */
+    public int awaitAll() {
+        int failed = 0;
+        for (CompletableFuture<?> result : submitted) {
+            try {
+                result.join();
+            } catch (CompletionException | CancellationException e) {
+                failed++;
+            }
+        }
+        submitted.clear();
+        return failed;
+    }
+
+    /**
+     * Espera a las consultas pendientes y detiene el ejecutor.
+     */
+    @Override
+    public void close() {
+        awaitAll();
+        executor.close();
+    }
+
+    @FunctionalInterface
+    public interface Query<T> {
+        T run(Connection connection) throws SQLException;
+    }
+}
@@ -0,0 +1,128 @@
+package com.unir.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Convierte las filas de un ResultSet en objetos, sin reflexión.
+ *
+ * Leer por nombre de columna (getString("first_name")) obliga al driver a buscar la columna, sin distinguir mayúsculas,
+ * en cada celda de cada fila. Aquí los nombres se buscan una única vez por ResultSet, a partir de su ResultSetMetaData,
+ * y cada fila se lee por posición con los métodos de tipos primitivos (getInt, getLong...).
+ *
+ * Ejemplo:
+ * <pre>
+ * RowMapper&lt;MySqlDepartment&gt; departments = RowMapper.of(
+ *         (rs, col) -&gt; new MySqlDepartment(rs.getString(col[0]), rs.getString(col[1])),
+ *         "dept_no", "dept_name");
+ * </pre>
+ *
+ * @param <T> - Tipo de objeto
+ */
+public final class RowMapper<T> {
+
+    private final Reader<T> reader;
+    private final String[] labels;
+
+    private RowMapper(Reader<T> reader, String[] labels) {
+        this.reader = reader;
+        this.labels = labels;
+    }
+
+    /**
+     * Crea un mapeador.
+     * @param reader - Lee una fila. Recibe la posición de cada columna en el mismo orden que labels
+     * @param labels - Nombres (o alias) de las columnas que se leen
+     * @return - Mapeador. Es inmutable y se puede compartir entre hilos
+     */
+    public static <T> RowMapper<T> of(Reader<T> reader, String... labels) {
+        return new RowMapper<>(reader, labels.clone());
+    }
+
+    /**
+     * Busca la posición de las columnas en un resultado.
+     * @param metaData - Metadatos del ResultSet
+     * @return - Mapeador listo para leer filas de ese resultado
+     * @throws SQLException - Alguna columna no existe en el resultado
+     */
+    public Bound<T> resolve(ResultSetMetaData metaData) throws SQLException {
+        int[] columns = new int[labels.length];
+        int count = metaData.getColumnCount();
+        for (int i = 0; i < labels.length; i++) {
+            for (int column = 1; column <= count && columns[i] == 0; column++) {
+                if (labels[i].equalsIgnoreCase(metaData.getColumnLabel(column))) {
+                    columns[i] = column;
+                }
+            }
+            if (columns[i] == 0) {
+                throw new SQLException("La columna " + labels[i] + " no existe en el resultado");
+            }
+        }
+        return new Bound<>(reader, columns);
+    }
+
+    /**
+     * Lee todas las filas de un resultado. El ResultSet lo cierra quien lo usa.
+     * @param resultSet - Resultado
+     * @return - Objetos leídos, en orden
+     * @throws SQLException - Error al leer el resultado
+     */
+    public List<T> list(ResultSet resultSet) throws SQLException {
+        List<T> rows = new ArrayList<>();
+        forEach(resultSet, rows::add);
+        return rows;
+    }
+
+    /**
+     * Recorre todas las filas de un resultado sin acumularlas. El ResultSet lo cierra quien lo usa.
+     * @param resultSet - Resultado
+     * @param handler - Recibe cada objeto leído
+     * @return - Número de filas leídas
+     * @throws SQLException - Error al leer el resultado
+     */
+    public long forEach(ResultSet resultSet, RowHandler<T> handler) throws SQLException {
+        Bound<T> bound = resolve(resultSet.getMetaData());
+        long rows = 0;
+        while (resultSet.next()) {
+            handler.handle(bound.map(resultSet));
+            rows++;
+        }
+        return rows;
+    }
+
+    /**
+     * Mapeador con las posiciones de las columnas ya resueltas para un resultado concreto.
+     */
+    public static final class Bound<T> {
+
+        private final Reader<T> reader;
+        private final int[] columns;
+
+        private Bound(Reader<T> reader, int[] columns) {
+            this.reader = reader;
+            this.columns = columns;
+        }
+
+        /**
+         * @param resultSet - Resultado, posicionado en una fila
+         * @return - Objeto leído de la fila actual
+         * @throws SQLException - Error al leer la fila
+         */
+        public T map(ResultSet resultSet) throws SQLException {
+            return reader.read(resultSet, columns);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Reader<T> {
+        T read(ResultSet resultSet, int[] columns) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface RowHandler<T> {
+        void handle(T row) throws SQLException;
+    }
+}
@@ -0,0 +1,39 @@
+package com.unir.jdbc;
+
+import com.unir.model.MySqlDepartment;
+import com.unir.model.MySqlDeptEmpt;
+import com.unir.model.MySqlEmployee;
+
+/**
+ * Mapeadores de las tablas del schema employees de MySQL a sus registros.
+ * Se pueden usar con cualquier consulta que devuelva esas columnas, aunque haya otras o estén en otro orden.
+ */
+public final class RowMappers {
+
+    public static final RowMapper<MySqlEmployee> EMPLOYEES = RowMapper.of(
+            (rs, col) -> new MySqlEmployee(
+                    rs.getInt(col[0]),
+                    rs.getString(col[1]),
+                    rs.getString(col[2]),
+                    rs.getString(col[3]),
+                    rs.getDate(col[4]),
+                    rs.getDate(col[5])),
+            "emp_no", "first_name", "last_name", "gender", "hire_date", "birth_date");
+
+    public static final RowMapper<MySqlDepartment> DEPARTMENTS = RowMapper.of(
+            (rs, col) -> new MySqlDepartment(
+                    rs.getString(col[0]),
+                    rs.getString(col[1])),
+            "dept_no", "dept_name");
+
+    public static final RowMapper<MySqlDeptEmpt> DEPT_EMP = RowMapper.of(
+            (rs, col) -> new MySqlDeptEmpt(
+                    rs.getInt(col[0]),
+                    rs.getString(col[1]),
+                    rs.getDate(col[2]),
+                    rs.getDate(col[3])),
+            "emp_no", "dept_no", "from_date", "to_date");
+
+    private RowMappers() {
+    }
+}
@@ -0,0 +1,221 @@
+package com.unir.jdbc;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Estadísticas de las sentencias SQL ejecutadas a través de {@link InstrumentedConnection}.
+ *
+ * Las sentencias se agrupan por plantilla: el SQL con los literales sustituidos por ? y los espacios normalizados,
+ * de modo que la misma consulta con distintos parámetros cuenta como una sola.
+ * De cada plantilla se guarda el número de ejecuciones, las filas leídas o modificadas y un histograma de la latencia
+ * (HdrHistogram), del que salen los percentiles.
+ *
+ * También se marca como posible N+1 la consulta que una misma conexión repite muchas veces seguidas
+ * (por ejemplo, un SELECT por cada fila que se carga o por cada fila de otra consulta).
+ *
+ * El resumen se escribe en el log al terminar la aplicación y se puede consultar por JMX (com.unir.jdbc:type=SqlStats).
+ */
+@Slf4j
+public class SqlStats implements SqlStatsMXBean {
+
+    // Ejecuciones seguidas de la misma consulta en una conexión a partir de las que se avisa de un posible N+1
+    static final int UMBRAL_N_MAS_1 = 20;
+
+    // Plantillas distintas como máximo. Las siguientes se acumulan en una sola, para no crecer sin límite
+    private static final int MAX_PLANTILLAS = 1000;
+
+    // Plantillas que aparecen en el resumen, de mayor a menor tiempo total
+    private static final int RESUMEN = 20;
+
+    // Longitud máxima del SQL en el resumen
+    private static final int MAX_SQL = 120;
+
+    private static final String OTRAS = "(otras sentencias)";
+    private static final String JMX_NAME = "com.unir.jdbc:type=SqlStats";
+
+    private static final Pattern TEXTOS = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMEROS = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?");
+    private static final Pattern LISTAS = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+
+    /**
+     * @return - Estadísticas compartidas por todas las conexiones del proceso.
+     *           La primera vez se registran en JMX y se programa el resumen al terminar
+     */
+    public static SqlStats shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * Estadísticas de una sentencia. Se llama una vez por sentencia preparada, o en cada ejecución si no está preparada.
+     * @param sql - SQL tal y como se envía
+     * @return - Estadísticas de su plantilla
+     */
+    public Template template(String sql) {
+        String template = normalize(sql);
+        Template stats = templates.get(template);
+        if (stats != null) {
+            return stats;
+        }
+        if (templates.size() >= MAX_PLANTILLAS) {
+            template = OTRAS;
+        }
+        return templates.computeIfAbsent(template, Template::new);
+    }
+
+    /**
+     * @param sql - SQL
+     * @return - SQL sin literales (sustituidos por ?), con las listas de IN reducidas a (...) y los espacios normalizados
+     */
+    static String normalize(String sql) {
+        String template = TEXTOS.matcher(sql).replaceAll("?");
+        template = NUMEROS.matcher(template).replaceAll("?");
+        template = LISTAS.matcher(template).replaceAll("IN (...)");
+        return ESPACIOS.matcher(template).replaceAll(" ").strip();
+    }
+
+    @Override
+    public long getExecutions() {
+        return templates.values().stream().mapToLong(template -> template.executions.sum()).sum();
+    }
+
+    @Override
+    public int getTemplates() {
+        return templates.size();
+    }
+
+    @Override
+    public List<String> getSuspectedNPlusOne() {
+        return templates.values().stream()
+                .filter(Template::isSuspected)
+                .map(template -> template.sql)
+                .toList();
+    }
+
+    @Override
+    public String getSummary() {
+        List<Template> sorted = templates.values().stream()
+                .sorted(Comparator.comparingLong((Template template) -> template.totalNanos.sum()).reversed())
+                .limit(RESUMEN)
+                .toList();
+
+        StringBuilder summary = new StringBuilder(String.format("Sentencias SQL: %d ejecuciones de %d plantillas%n",
+                getExecutions(), templates.size()));
+        summary.append(String.format("%10s %12s %11s %9s %9s %9s %9s  %s%n",
+                "llamadas", "filas", "total ms", "p50 ms", "p95 ms", "p99 ms", "max ms", "sentencia"));
+        for (Template template : sorted) {
+            ConcurrentHistogram latency = template.latency;
+            summary.append(String.format("%10d %12d %11.1f %9.2f %9.2f %9.2f %9.2f  %s",
+                    template.executions.sum(), template.rows.sum(), template.totalNanos.sum() / 1_000_000.0,
+                    latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(95) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0, latency.getMaxValue() / 1000.0,
+                    abbreviate(template.sql)));
+            if (template.isSuspected()) {
+                summary.append(String.format(" [posible N+1: hasta %d veces seguidas]", template.longestRun.get()));
+            }
+            summary.append(System.lineSeparator());
+        }
+        return summary.toString();
+    }
+
+    @Override
+    public void reset() {
+        // Las sentencias preparadas guardan su plantilla, así que se ponen a cero en lugar de descartarlas
+        templates.values().forEach(Template::reset);
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+
+    private static String abbreviate(String sql) {
+        return sql.length() <= MAX_SQL ? sql : sql.substring(0, MAX_SQL - 3) + "...";
+    }
+
+    /**
+     * Estadísticas de una plantilla. Se actualizan desde varios hilos a la vez.
+     */
+    public static final class Template {
+
+        private final String sql;
+
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        // Latencia en microsegundos, con 3 cifras significativas
+        private final ConcurrentHistogram latency = new ConcurrentHistogram(3);
+
+        // Mayor número de ejecuciones seguidas en una conexión, solo a partir del umbral de N+1
+        private final AtomicLong longestRun = new AtomicLong();
+
+        private Template(String sql) {
+            this.sql = sql;
+        }
+
+        void executed(long nanos, long affectedRows) {
+            executions.increment();
+            totalNanos.add(nanos);
+            latency.recordValue(nanos / 1000);
+            rows.add(affectedRows);
+        }
+
+        void read(long readRows) {
+            rows.add(readRows);
+        }
+
+        void repeated(int run) {
+            // Se avisa una vez por plantilla, no cada vez que una conexión llega al umbral
+            if (run == UMBRAL_N_MAS_1 && !isSuspected()) {
+                log.warn("Posible N+1: la misma consulta se ha ejecutado {} veces seguidas en una conexión: {}", run, abbreviate(sql));
+            }
+            longestRun.accumulateAndGet(run, Math::max);
+        }
+
+        boolean isSuspected() {
+            return longestRun.get() >= UMBRAL_N_MAS_1;
+        }
+
+        private void reset() {
+            executions.reset();
+            rows.reset();
+            totalNanos.reset();
+            latency.reset();
+            longestRun.set(0);
+        }
+    }
+
+    private static final class Shared {
+
+        private static final SqlStats INSTANCE = register(new SqlStats());
+
+        private static SqlStats register(SqlStats stats) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(stats, new ObjectName(JMX_NAME));
+            } catch (JMException e) {
+                log.warn("No se han podido publicar las estadísticas SQL por JMX", e);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                if (stats.getExecutions() > 0) {
+                    log.info("{}", stats);
+                }
+            }, "sql-stats-shutdown"));
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.unir.jdbc;
+
+import java.util.List;
+
+/**
+ * Estadísticas SQL publicadas por JMX (jconsole, VisualVM...). Ver {@link SqlStats}.
+ */
+public interface SqlStatsMXBean {
+
+    /**
+     * @return - Número total de sentencias ejecutadas
+     */
+    long getExecutions();
+
+    /**
+     * @return - Número de plantillas distintas
+     */
+    int getTemplates();
+
+    /**
+     * @return - Plantillas que se han repetido muchas veces seguidas en una conexión
+     */
+    List<String> getSuspectedNPlusOne();
+
+    /**
+     * @return - Resumen de las plantillas con más tiempo total: llamadas, filas y percentiles de latencia
+     */
+    String getSummary();
+
+    /**
+     * Pone a cero todas las estadísticas.
+     */
+    void reset();
+}
@@ -0,0 +1,107 @@
+package com.unir.jdbc;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registro de sentencias preparadas de una conexión.
+ * Cada consulta se identifica por un nombre y se prepara una única vez. Las siguientes veces se reutiliza la misma sentencia,
+ * sin volver a enviar el SQL al servidor para que lo analice y planifique.
+ *
+ * Si se superan las sentencias máximas, se cierra la que lleva más tiempo sin usarse (LRU).
+ * Al cerrar el registro se cierran todas las sentencias.
+ *
+ * OJO! Las sentencias pertenecen al registro: quien las usa no debe cerrarlas (sí sus ResultSet).
+ * Una conexión no se debe usar desde varios hilos a la vez, así que el registro tampoco.
+ */
+@Slf4j
+public class StatementCache implements AutoCloseable {
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+
+    /**
+     * Constructor de la clase.
+     * @param connection - Conexión sobre la que se preparan las sentencias
+     * @param capacity - Número máximo de sentencias abiertas
+     */
+    public StatementCache(Connection connection, int capacity) {
+        this.connection = connection;
+        // accessOrder = true: el orden de iteración es del menos al más recientemente usado
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                log.debug("Sentencia {} expulsada del registro", eldest.getKey());
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Devuelve la sentencia preparada de una consulta, preparándola si es la primera vez.
+     * Los parámetros de usos anteriores se limpian.
+     * @param name - Nombre de la consulta
+     * @param sql - SQL de la consulta. Solo se usa la primera vez
+     * @return - Sentencia preparada
+     * @throws SQLException - Error al preparar la sentencia
+     */
+    public PreparedStatement get(String name, String sql) throws SQLException {
+        PreparedStatement statement = statements.get(name);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql);
+            statements.put(name, statement);
+        } else {
+            statement.clearParameters();
+        }
+        return statement;
+    }
+
+    /**
+     * @return - Número de sentencias abiertas
+     */
+    public int size() {
+        return statements.size();
+    }
+
+    /**
+     * Cierra todas las sentencias del registro. La conexión no se cierra.
+     * @throws SQLException - Error al cerrar alguna sentencia
+     */
+    @Override
+    public void close() throws SQLException {
+        List<SQLException> errors = new ArrayList<>();
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                errors.add(e);
+            }
+        }
+        statements.clear();
+
+        if (!errors.isEmpty()) {
+            SQLException first = errors.getFirst();
+            errors.stream().skip(1).forEach(first::addSuppressed);
+            throw first;
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            log.warn("Error al cerrar una sentencia", e);
+        }
+    }
+}
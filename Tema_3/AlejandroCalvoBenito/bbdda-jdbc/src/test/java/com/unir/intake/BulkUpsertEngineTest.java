@@ -0,0 +1,126 @@
+package com.unir.intake;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Comportamiento de {@link BulkUpsertEngine} cuando falla un lote, con H2 en memoria en modo MySQL.
+ * La tabla admite nombres de hasta 5 caracteres: una fila con un nombre más largo hace fallar su lote.
+ */
+class BulkUpsertEngineTest {
+
+    private static final int LOTE = 2;
+
+    private static final TableMapping<Row> ROWS = new TableMapping<>(
+            "rows_test",
+            List.of("id"),
+            List.of("name"),
+            (statement, row) -> {
+                statement.setInt(1, row.id());
+                statement.setString(2, row.name());
+            },
+            row -> row.name().length());
+
+    @TempDir
+    Path dir;
+
+    private Connection connection;
+    private IntakeCheckpoints checkpoints;
+    private String file;
+
+    @BeforeEach
+    void openConnection() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:intake;MODE=MySQL", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE rows_test (id INT PRIMARY KEY, name VARCHAR(5) NOT NULL)");
+        }
+        checkpoints = new IntakeCheckpoints(connection);
+        connection.setAutoCommit(false);
+
+        // El punto de control solo necesita que el fichero exista, para guardar su tamaño y su fecha
+        file = Files.writeString(dir.resolve("rows.csv"), "id,name\n").toString();
+    }
+
+    @AfterEach
+    void closeConnection() throws SQLException {
+        checkpoints.close();
+        // Al cerrar la última conexión se borra la base de datos en memoria
+        connection.close();
+    }
+
+    @Test
+    void failedBatchIsNotCountedInTheCheckpoint() throws SQLException {
+        List<Row> rows = List.of(
+                new Row(1, "a"), new Row(2, "b"),
+                new Row(3, "c"), new Row(4, "d"),
+                new Row(5, "e"), new Row(6, "demasiado largo"),
+                new Row(7, "g"));
+
+        assertThrows(SQLException.class, () -> load(rows));
+        connection.rollback();
+
+        // Los dos primeros lotes se confirmaron con su punto de control. El tercero falló y no se envía al cerrar
+        assertEquals(4, checkpoints.resume(file));
+        assertEquals(4, count());
+    }
+
+    @Test
+    void engineRefusesRowsAfterAFailedBatch() throws SQLException {
+        try (BulkUpsertEngine<Row> engine = engine()) {
+            engine.add(new Row(1, "a"));
+            assertThrows(SQLException.class, () -> engine.add(new Row(2, "demasiado largo")));
+            assertThrows(IllegalStateException.class, () -> engine.add(new Row(3, "c")));
+            assertThrows(IllegalStateException.class, engine::flush);
+            assertEquals(0, engine.getTotal());
+        }
+        connection.rollback();
+
+        assertEquals(0, checkpoints.resume(file));
+        assertEquals(0, count());
+    }
+
+    /**
+     * Misma secuencia que la carga de MySqlApplication: commit cada lote, con el punto de control en la misma transacción.
+     */
+    private void load(List<Row> rows) throws SQLException {
+        try (BulkUpsertEngine<Row> engine = engine()) {
+            engine.setBeforeCommit(done -> checkpoints.save(file, done));
+            for (Row row : rows) {
+                engine.add(row);
+            }
+            engine.flush();
+            checkpoints.save(file, engine.getTotal());
+        }
+        connection.commit();
+    }
+
+    private BulkUpsertEngine<Row> engine() throws SQLException {
+        return new BulkUpsertEngine<>(connection, SqlDialect.MYSQL, ROWS,
+                AdaptiveBatchSize.fixed(LOTE), new CommitPolicy(LOTE, 0));
+    }
+
+    private int count() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM rows_test")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private record Row(int id, String name) {
+    }
+}
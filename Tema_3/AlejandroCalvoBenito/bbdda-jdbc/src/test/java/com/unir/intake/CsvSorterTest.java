@@ -0,0 +1,48 @@
+package com.unir.intake;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Ordenación de ficheros CSV con {@link CsvSorter}, en memoria y por tramos.
+ */
+class CsvSorterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void emptyFileIsReturnedUnchanged() throws IOException {
+        Path file = Files.createFile(dir.resolve("empty.csv"));
+
+        assertEquals(file.toString(), new CsvSorter(1).sort(file.toString()));
+        assertEquals(0, Files.size(file));
+    }
+
+    @Test
+    void sortsByKeyKeepingTheHeader() throws IOException {
+        Path file = Files.write(dir.resolve("dept_emp.csv"), List.of(
+                "emp_no,dept_no,from_date",
+                "10002,d002,1990-01-01",
+                "10001,d005,1990-01-01",
+                "10002,d001,1990-01-01",
+                "10001,d005,1991-01-01"));
+
+        // Con 1 byte de memoria cada linea va a su propio tramo y se ordena mezclándolos
+        Path sorted = Path.of(new CsvSorter(2, 1).sort(file.toString()));
+
+        assertEquals(List.of(
+                "emp_no,dept_no,from_date",
+                "10001,d005,1990-01-01",
+                "10001,d005,1991-01-01",
+                "10002,d001,1990-01-01",
+                "10002,d002,1990-01-01"), Files.readAllLines(sorted));
+    }
+}
@@ -4,6 +4,9 @@ import com.unir.config.HibernateMySqlConfig;
 import com.unir.config.LogbackConfig;
 import com.unir.dao.DepartmentsDao;
 import com.unir.dao.EmployeesDao;
+import com.unir.model.dto.DepartmentSummary;
+import com.unir.model.dto.EmployeeSalary;
+import com.unir.model.dto.GenderCount;
 import com.unir.model.mysql.Department;
 import com.unir.model.mysql.DeptEmployee;
 import com.unir.model.mysql.Employee;
@@ -11,7 +14,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Session;
 
 import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Slf4j
@@ -41,9 +46,19 @@ public class MySqlApplication {
             bbddDepartment.setDeptNo("d010");
 
             //Ejemplo de uso de DAO 2.1: Obtenemos un departamento de la base de datos
-            Department bbddDepartment2 = departmentsDao.findById("d002");
+            //Plan de carga EMPLOYEES (pantalla de detalle): el departamento, sus filas de dept_emp y sus empleados en una sola consulta
+            long statements = HibernateMySqlConfig.getStatementCount();
+            Department bbddDepartment2 = departmentsDao.findById("d002", DepartmentsDao.FetchPlan.EMPLOYEES);
             log.info("Departamento d002: {}", bbddDepartment2);
-            log.info("Empleados del departamento d002: {}", bbddDepartment2.getDeptEmployees().size());
+            log.info("Empleados del departamento d002: {} ({} sentencias SQL)", bbddDepartment2.getDeptEmployees().size(),
+                    HibernateMySqlConfig.getStatementCount() - statements);
+
+            //Ejemplo de uso de DAO 2.2: Listado de departamentos con su número de empleados (pantalla de listado).
+            //Una sola consulta, sin cargar ningún empleado
+            statements = HibernateMySqlConfig.getStatementCount();
+            List<DepartmentSummary> summaries = departmentsDao.findAllSummaries();
+            summaries.forEach(summary -> log.info("Departamento: {} tiene {} empleados", summary.deptName(), summary.employees()));
+            log.info("Listado de departamentos: {} sentencias SQL", HibernateMySqlConfig.getStatementCount() - statements);
 
             //OJO! Las operaciones de escritura se deben hacer DENTRO de una transacción
             try {
@@ -90,39 +105,39 @@ public class MySqlApplication {
             session.getTransaction().commit();
             log.info("Roberto insertado de nuevo");
 
+            //Ejemplo de uso de DAO 5: Recorremos todos los empleados sin cargarlos en la sesión (sesión sin estado y cursor).
+            //Cada empleado llega como un EmployeeData y se descarta tras procesarlo, así que la memoria no depende del tamaño de la tabla
+            Map<String, Long> employeesByGender = new HashMap<>();
+            long scanned = employeesDao.scanAll(employee -> employeesByGender.merge(employee.gender(), 1L, Long::sum));
+            log.info("Empleados recorridos: {}, por género: {}", scanned, employeesByGender);
+
             // Ejercicio: Consulta 1 de la Actividad 2
             // Obtener el número de hombres y mujeres de la base de datos. Ordenar de forma descendente
-            List<Object[]> menWomen = employeesDao.findMenWomen();
-            for (Object[] row : menWomen) {
-                Character gender = (Character) row[0]; // ojo, es un char, no un string
-                Long count = ((Number) row[1]).longValue();
-                log.info("Género: {}, Recuento: {}", gender, count);
+            List<GenderCount> menWomen = employeesDao.findMenWomen();
+            for (GenderCount row : menWomen) {
+                log.info("Género: {}, Recuento: {}", row.gender(), row.count());
             }
 
             // Ejercicio: Consulta 2 de la Actividad 2
             // Mostrar el nombre, apellido y salario de la persona mejor pagada de un departamento
             // concreto (parámetro variable).
-            List<Object[]> bestPaidEmployees = employeesDao.findBestPaidEmployeesInDepartment("Customer Service");
-            if (bestPaidEmployees.size() > 1) {
-                Object[] secondBestPaidEmployee = bestPaidEmployees.getFirst(); // Índice 1 para el segundo
-                String firstName = (String) secondBestPaidEmployee[0];
-                String lastName = (String) secondBestPaidEmployee[1];
-                Integer salary = ((Number) secondBestPaidEmployee[2]).intValue();
-                log.info("Empleado mejor pagado -> Nombre: {}, Apellido: {}, Salario: {}", firstName, lastName, salary);
+            List<EmployeeSalary> bestPaidEmployees = employeesDao.findBestPaidEmployeesInDepartment("Customer Service", 1);
+            if (!bestPaidEmployees.isEmpty()) {
+                EmployeeSalary bestPaidEmployee = bestPaidEmployees.getFirst();
+                log.info("Empleado mejor pagado -> Nombre: {}, Apellido: {}, Salario: {}",
+                        bestPaidEmployee.firstName(), bestPaidEmployee.lastName(), bestPaidEmployee.salary());
             } else {
                 log.info("No hay ningún trabajador en ese departamento.");
             }
 
             // Ejercicio: Consulta 3 de la Actividad 2
-            // Mostrar el nombre, apellido y salario de la persona mejor pagada de un departamento
+            // Mostrar el nombre, apellido y salario de la segunda persona mejor pagada de un departamento
             // concreto (parámetro variable).
-            bestPaidEmployees = employeesDao.findBestPaidEmployeesInDepartment("Customer Service");
+            bestPaidEmployees = employeesDao.findBestPaidEmployeesInDepartment("Customer Service", 2);
             if (bestPaidEmployees.size() > 1) {
-                Object[] secondBestPaidEmployee = bestPaidEmployees.get(1); // Índice 1 para el segundo
-                String firstName = (String) secondBestPaidEmployee[0];
-                String lastName = (String) secondBestPaidEmployee[1];
-                Integer salary = ((Number) secondBestPaidEmployee[2]).intValue();
-                log.info("Empleado segundo mejor pagado -> Nombre: {}, Apellido: {}, Salario: {}", firstName, lastName, salary);
+                EmployeeSalary secondBestPaidEmployee = bestPaidEmployees.get(1); // Índice 1 para el segundo
+                log.info("Empleado segundo mejor pagado -> Nombre: {}, Apellido: {}, Salario: {}",
+                        secondBestPaidEmployee.firstName(), secondBestPaidEmployee.lastName(), secondBestPaidEmployee.salary());
             } else {
                 log.info("No hay un segundo mejor pagado trabajador en ese departamento.");
             }
@@ -139,5 +154,15 @@ public class MySqlApplication {
         } catch (Exception e) {
             log.error("Error al tratar con la base de datos", e);
         }
+
+        //Caché de segundo nivel: es de la factoría de sesiones, así que se comparte entre sesiones.
+        //El departamento d002 y sus empleados ya se leyeron en la sesión anterior: ahora salen de la caché, sin consultar MySQL
+        try (Session session = HibernateMySqlConfig.getSessionFactory().openSession()) {
+            Department department = new DepartmentsDao(session).findById("d002");
+            log.info("Empleados del departamento d002 (desde la caché): {}", department.getDeptEmployees().size());
+        } catch (Exception e) {
+            log.error("Error al tratar con la base de datos", e);
+        }
+        HibernateMySqlConfig.logCacheStatistics();
     }
 }
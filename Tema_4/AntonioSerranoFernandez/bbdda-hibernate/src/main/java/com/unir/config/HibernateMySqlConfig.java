@@ -4,9 +4,13 @@ import com.unir.model.mysql.*;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cache.jcache.ConfigSettings;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.cfg.Environment;
 import org.hibernate.service.ServiceRegistry;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import java.util.Objects;
 import java.util.Properties;
 
 @Slf4j
@@ -18,22 +22,13 @@ public class HibernateMySqlConfig {
     // Nombre de la base de datos
     private static final String DATABASE = "employees";
 
+    // Sentencias que se agrupan en cada lote JDBC. Los DAO vacían la sesión cada LOTE entidades (ver saveAll)
+    public static final int LOTE = 50;
+
     public static SessionFactory getSessionFactory() {
         if (sessionFactory == null) {
             try {
-                Configuration configuration = getConfiguration();
-
-                // Clases anotadas - Aqui indicamos las clases (entidades) que queremos que Hibernate gestione.
-                configuration.addAnnotatedClass(Employee.class);
-                configuration.addAnnotatedClass(Department.class);
-                configuration.addAnnotatedClass(DeptEmployee.class);
-                configuration.addAnnotatedClass(DeptManager.class);
-                configuration.addAnnotatedClass(Title.class);
-                configuration.addAnnotatedClass(Salary.class);
-
-                ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
-                        .applySettings(configuration.getProperties()).build();
-                sessionFactory = configuration.buildSessionFactory(serviceRegistry);
+                sessionFactory = buildSessionFactory(new Properties());
             } catch (Exception e) {
                 log.error("Error al crear la factoría de sesiones de MySQL: {}", e.getMessage(), e);
             }
@@ -41,6 +36,29 @@ public class HibernateMySqlConfig {
         return sessionFactory;
     }
 
+    /**
+     * Crea una factoría de sesiones nueva con la configuración de MySQL, cambiando los ajustes indicados.
+     * Las pruebas la usan para trabajar contra otra base de datos (URL, usuario, dialecto...).
+     * @param settings Ajustes que sustituyen a los de MySQL
+     * @return Factoría de sesiones. Quien la crea debe cerrarla
+     */
+    public static SessionFactory buildSessionFactory(Properties settings) {
+        Configuration configuration = getConfiguration();
+        configuration.addProperties(settings);
+
+        // Clases anotadas - Aqui indicamos las clases (entidades) que queremos que Hibernate gestione.
+        configuration.addAnnotatedClass(Employee.class);
+        configuration.addAnnotatedClass(Department.class);
+        configuration.addAnnotatedClass(DeptEmployee.class);
+        configuration.addAnnotatedClass(DeptManager.class);
+        configuration.addAnnotatedClass(Title.class);
+        configuration.addAnnotatedClass(Salary.class);
+
+        ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
+                .applySettings(configuration.getProperties()).build();
+        return configuration.buildSessionFactory(serviceRegistry);
+    }
+
     /**
      * Configuración de Hibernate equivalente al hibernate.cfg.xml.
      * Indicamos la base de datos, usuario y contraseña.
@@ -52,15 +70,65 @@ public class HibernateMySqlConfig {
         // Configuración de Hibernate equivalente al hibernate.cfg.xml
         Properties settings = new Properties();
         //settings.put(Environment.DRIVER, "com.mysql.cj.jdbc.Driver");
-        settings.put(Environment.URL, "jdbc:mysql://" + System.getenv("MYSQL_HOST") + ":" + System.getenv("MYSQL_PORT") + "/" + DATABASE);
-        settings.put(Environment.USER, System.getenv("MYSQL_USER"));
-        settings.put(Environment.PASS, System.getenv("MYSQL_PASSWORD"));
+        settings.put(Environment.URL, "jdbc:mysql://" + System.getenv("MYSQL_HOST") + ":" + System.getenv("MYSQL_PORT") + "/" + DATABASE
+                // El driver reescribe cada lote de INSERT como un único INSERT de varias filas
+                + "?rewriteBatchedStatements=true"
+                // Las consultas con fetch size (ver EmployeesDao.scanAll) leen las filas por partes con un cursor del servidor.
+                // Sin esto, el driver de MySQL carga el resultado entero en memoria antes de devolver la primera fila
+                + "&useCursorFetch=true");
+        // Properties no admite valores null: sin las variables de entorno, usuario y contraseña vacíos
+        settings.put(Environment.USER, Objects.toString(System.getenv("MYSQL_USER"), ""));
+        settings.put(Environment.PASS, Objects.toString(System.getenv("MYSQL_PASSWORD"), ""));
         settings.put(Environment.DIALECT, "org.hibernate.dialect.MySQL8Dialect");
         settings.put(Environment.SHOW_SQL, "true");
         settings.put(Environment.CURRENT_SESSION_CONTEXT_CLASS, "thread");
         settings.put(Environment.HBM2DDL_AUTO, "validate");
+        // Escrituras en lotes: los INSERT y UPDATE de la misma tabla se envían juntos, LOTE en cada viaje a la base de datos.
+        // Ordenarlos por entidad evita que un lote se corte cada vez que se alterna entre tablas (employees, dept_emp, salaries...)
+        settings.put(Environment.STATEMENT_BATCH_SIZE, String.valueOf(LOTE));
+        settings.put(Environment.ORDER_INSERTS, "true");
+        settings.put(Environment.ORDER_UPDATES, "true");
+        // Caché de segundo nivel, compartida por todas las sesiones: JCache con Ehcache en memoria del proceso.
+        // Solo se cachean las entidades y colecciones anotadas con @Cache. Sus regiones (tamaño y caducidad) están en ehcache.xml
+        settings.put(Environment.USE_SECOND_LEVEL_CACHE, "true");
+        settings.put(Environment.CACHE_REGION_FACTORY, "jcache");
+        settings.put(ConfigSettings.PROVIDER, "org.ehcache.jsr107.EhcacheCachingProvider");
+        settings.put(ConfigSettings.CONFIG_URI, "ehcache.xml");
+        // Caché de consultas: solo para las marcadas con setCacheable(true)
+        settings.put(Environment.USE_QUERY_CACHE, "true");
+        // Estadísticas de Hibernate, entre ellas los aciertos y fallos de la caché (ver logCacheStatistics)
+        settings.put(Environment.GENERATE_STATISTICS, "true");
         // Aplicar configuraciones
         configuration.setProperties(settings);
         return configuration;
     }
+
+    /**
+     * Número de sentencias SQL enviadas a la base de datos desde que se creó la factoría de sesiones.
+     * La diferencia entre dos lecturas es el número de sentencias de lo que se haya hecho entre ellas
+     * (solo si no hay otras sesiones trabajando a la vez).
+     * @return Sentencias preparadas
+     */
+    public static long getStatementCount() {
+        return getSessionFactory().getStatistics().getPrepareStatementCount();
+    }
+
+    /**
+     * Muestra en el log los aciertos, fallos y escrituras de la caché de segundo nivel, en total y por región.
+     * Se acumulan desde que se crea la factoría de sesiones.
+     */
+    public static void logCacheStatistics() {
+        Statistics statistics = getSessionFactory().getStatistics();
+        log.info("Caché de segundo nivel: {} aciertos, {} fallos, {} escrituras",
+                statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount(), statistics.getSecondLevelCachePutCount());
+        log.info("Caché de consultas: {} aciertos, {} fallos, {} escrituras",
+                statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(), statistics.getQueryCachePutCount());
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            if (regionStatistics != null) {
+                log.info("Región {}: {} aciertos, {} fallos, {} escrituras", region,
+                        regionStatistics.getHitCount(), regionStatistics.getMissCount(), regionStatistics.getPutCount());
+            }
+        }
+    }
 }
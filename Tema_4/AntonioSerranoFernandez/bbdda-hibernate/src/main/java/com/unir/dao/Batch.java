@@ -0,0 +1,79 @@
+package com.unir.dao;
+
+import com.unir.config.HibernateMySqlConfig;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Escritura de muchas entidades en lotes, para los saveAll de los DAO.
+ *
+ * Cada {@link HibernateMySqlConfig#LOTE} entidades se vacía la sesión: flush() envía los INSERT pendientes como lotes JDBC
+ * y después se desconectan de la sesión las entidades ya guardadas. Así la memoria de la sesión no crece con el número
+ * de entidades. No se usa clear(): las entidades que ya estaban en la sesión (por ejemplo, los departamentos a los que
+ * se asignan los empleados) siguen en ella y Hibernate no tiene que consultarlas para comprobar que existen.
+ */
+final class Batch {
+
+    private Batch() {
+    }
+
+    /**
+     * Inserta las entidades. Debe llamarse dentro de una transacción.
+     * @param session - Sesión de Hibernate
+     * @param entities - Entidades a insertar
+     * @return - Número de entidades insertadas
+     */
+    static <T> int persistAll(Session session, Iterable<T> entities) {
+        return persistAll(session, entities, entity -> List.of());
+    }
+
+    /**
+     * Inserta las entidades y, detrás de cada una, las que dependen de ella. Debe llamarse dentro de una transacción.
+     * Una entidad y sus dependientes siempre se vacían juntas, para que las dependientes hagan referencia a una entidad
+     * de la sesión (si no, Hibernate consultaría la base de datos por cada una para comprobar que existe).
+     * @param session - Sesión de Hibernate
+     * @param entities - Entidades a insertar
+     * @param dependents - Entidades que hacen referencia a cada una (por ejemplo, sus salarios). Puede devolver null
+     * @return - Número de entidades insertadas, incluidas las dependientes
+     */
+    static <T> int persistAll(Session session, Iterable<T> entities, Function<T, Collection<?>> dependents) {
+        // Las entidades importadas no se añaden a la caché de segundo nivel: una carga masiva la llenaría
+        // y expulsaría lo que de verdad se consulta. Sí se lee de ella
+        CacheMode cacheMode = session.getCacheMode();
+        session.setCacheMode(CacheMode.GET);
+        try {
+            List<Object> pending = new ArrayList<>(HibernateMySqlConfig.LOTE);
+            int count = 0;
+            for (T entity : entities) {
+                session.persist(entity);
+                pending.add(entity);
+                Collection<?> children = dependents.apply(entity);
+                if (children != null) {
+                    for (Object child : children) {
+                        session.persist(child);
+                        pending.add(child);
+                    }
+                }
+                if (pending.size() >= HibernateMySqlConfig.LOTE) {
+                    count += flush(session, pending);
+                }
+            }
+            return count + flush(session, pending);
+        } finally {
+            session.setCacheMode(cacheMode);
+        }
+    }
+
+    private static int flush(Session session, List<Object> pending) {
+        session.flush();
+        pending.forEach(session::detach);
+        int count = pending.size();
+        pending.clear();
+        return count;
+    }
+}
@@ -1,13 +1,15 @@
 package com.unir.dao;
 
+import com.unir.model.dto.DepartmentSummary;
 import com.unir.model.mysql.Department;
-import com.unir.model.mysql.DeptEmployee;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Session;
+import org.hibernate.jpa.SpecHints;
+import org.hibernate.query.Query;
 import java.sql.SQLException;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 @AllArgsConstructor
 @Slf4j
@@ -15,32 +17,94 @@ public class DepartmentsDao {
 
     private final Session session;
 
+    /**
+     * Planes de carga de un departamento según el caso de uso (ver los @NamedEntityGraph de {@link Department}).
+     * Las relaciones del plan se cargan en la misma consulta que el departamento, con un JOIN.
+     * Las demás quedan LAZY: si se accede a ellas, se cargan con otra consulta.
+     *
+     * OJO! En las consultas (findAll) no se usa el grafo: Hibernate traduce el subgrafo del empleado, que es parte de la
+     * clave de dept_emp, a un JOIN interno que deja fuera los departamentos sin filas. Por eso cada plan tiene también
+     * los LEFT JOIN FETCH equivalentes.
+     */
+    public enum FetchPlan {
+        // Solo las columnas del departamento
+        BASIC(null, ""),
+        // Detalle con sus empleados (dept_emp y employees)
+        EMPLOYEES(Department.GRAPH_EMPLOYEES, "left join fetch d.deptEmployees de left join fetch de.empNo"),
+        // Detalle con sus jefes (dept_manager y employees)
+        MANAGERS(Department.GRAPH_MANAGERS, "left join fetch d.deptManagers dm left join fetch dm.empNo");
+
+        private final String graph;
+        private final String fetches;
+
+        FetchPlan(String graph, String fetches) {
+            this.graph = graph;
+            this.fetches = fetches;
+        }
+    }
+
     /**
      * Consulta de todos los departamentos de la base de datos
      * * Se puede hacer de dos formas:
      * * 1. Con SQL nativo
      * * 2. Con HQL: https://docs.jboss.org/hibernate/orm/3.5/reference/es-ES/html/queryhql.html
-     * @return Lista de departamentos
+     * @return Lista de departamentos, sin sus relaciones
      * @throws SQLException Excepción en caso de error
      */
     public List<Department> findAll() throws SQLException {
-        List<Department> departments = session.createQuery("from Department", Department.class).list();
-        for(Department department : departments) {
-            //Podemos cambiar el fetch de Department para ver los cambios. Por defecto es LAZY
-            Set<DeptEmployee> employeesOfDepartment = department.getDeptEmployees();
-            log.info("Departamento: {} tiene {} empleados", department.getDeptName(), employeesOfDepartment.size());
+        return findAll(FetchPlan.BASIC);
+    }
+
+    /**
+     * Consulta de todos los departamentos con un plan de carga.
+     * Sin relaciones (BASIC), la consulta es cacheable: la caché de consultas guarda los identificadores del resultado
+     * y los departamentos se obtienen de la caché de segundo nivel. Se invalida sola cuando se modifica la tabla departments.
+     * @param plan Relaciones que se cargan junto a los departamentos
+     * @return Lista de departamentos
+     * @throws SQLException Excepción en caso de error
+     */
+    public List<Department> findAll(FetchPlan plan) throws SQLException {
+        // Hibernate quita los departamentos repetidos por el JOIN con sus colecciones
+        Query<Department> query = session.createQuery("select d from Department d " + plan.fetches, Department.class);
+        if (plan.graph == null) {
+            query.setCacheable(true);
         }
-        return departments;
+        return query.list();
+    }
+
+    /**
+     * Listado de departamentos con su número de empleados, en una sola consulta.
+     * El número se calcula en la base de datos (size() se traduce a un COUNT): no se carga ninguna fila de dept_emp.
+     * @return Resumen de cada departamento, ordenados por identificador
+     * @throws SQLException Excepción en caso de error
+     */
+    public List<DepartmentSummary> findAllSummaries() throws SQLException {
+        return session.createQuery("select new com.unir.model.dto.DepartmentSummary(d.deptNo, d.deptName, size(d.deptEmployees)) " +
+                "from Department d order by d.deptNo", DepartmentSummary.class).list();
     }
 
     /**
      * Consulta de un departamento por su identificador.
      * @param id Identificador del departamento
-     * @return Departamento
+     * @return Departamento, sin sus relaciones
      * @throws SQLException Excepción en caso de error
      */
     public Department findById(String id) throws SQLException {
-        return session.get(Department.class, id);
+        return findById(id, FetchPlan.BASIC);
+    }
+
+    /**
+     * Consulta de un departamento por su identificador con un plan de carga.
+     * @param id Identificador del departamento
+     * @param plan Relaciones que se cargan junto al departamento
+     * @return Departamento
+     * @throws SQLException Excepción en caso de error
+     */
+    public Department findById(String id, FetchPlan plan) throws SQLException {
+        if (plan.graph == null) {
+            return session.get(Department.class, id);
+        }
+        return session.find(Department.class, id, Map.of(SpecHints.HINT_SPEC_FETCH_GRAPH, session.getEntityGraph(plan.graph)));
     }
 
     /**
@@ -54,6 +118,17 @@ public class DepartmentsDao {
         return department;
     }
 
+    /**
+     * Inserta muchos departamentos en lotes.
+     * Debe llamarse dentro de una transacción. Los departamentos guardados se desconectan de la sesión (ver Batch).
+     * @param departments Departamentos a insertar
+     * @return Número de departamentos insertados
+     * @throws SQLException Excepción en caso de error
+     */
+    public int saveAll(Iterable<Department> departments) throws SQLException {
+        return Batch.persistAll(session, departments);
+    }
+
     /**
      * Inserta un nuevo departamento en la base de datos si no existe.
      * Si existe, actualiza el departamento.
@@ -1,14 +1,29 @@
 package com.unir.dao;
 
+import com.unir.model.dto.EmployeeData;
+import com.unir.model.dto.EmployeeSalary;
+import com.unir.model.dto.GenderCount;
+import com.unir.model.mysql.Department;
+import com.unir.model.mysql.DeptEmployee;
 import com.unir.model.mysql.Employee;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.Hibernate;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.query.Query;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @AllArgsConstructor
 @Slf4j
@@ -16,20 +31,65 @@ public class EmployeesDao {
 
     private final Session session;
 
+    // Filas que se piden a la base de datos en cada viaje al recorrer una tabla
+    private static final int FETCH_SIZE = 1000;
+
+    // Colección Department.deptEmployees en la caché de segundo nivel
+    private static final String DEPT_EMPLOYEES = Department.class.getName() + ".deptEmployees";
+
     /**
      * Consulta de todos los empleados de la base de datos
      * Se puede hacer de dos formas:
      * 1. Con SQL nativo
      * 2. Con HQL: https://docs.jboss.org/hibernate/orm/3.5/reference/es-ES/html/queryhql.html
+     * OJO! Carga en la sesión los 300.000 empleados de la tabla. Para recorrerlos todos es mejor {@link #scanAll}.
      * @throws SQLException Excepción en caso de error
      */
     public List<Employee> findAll() throws SQLException {
-        List<Employee> employees = session.createNativeQuery("SELECT * FROM employees", Employee.class).list();
+        List<Employee> employees = session.createQuery("FROM Employee", Employee.class).list();
         log.debug("Número de empleados: {}", employees.size());
-        session.createQuery("FROM Employee", Employee.class).list();
         return employees;
     }
 
+    /**
+     * Recorre todos los empleados, ordenados por identificador, con memoria acotada.
+     * @param action - Qué hacer con cada empleado
+     * @return Número de empleados recorridos
+     * @throws SQLException Excepción en caso de error
+     */
+    public long scanAll(Consumer<EmployeeData> action) throws SQLException {
+        return scanAll(FETCH_SIZE, action);
+    }
+
+    /**
+     * Recorre todos los empleados, ordenados por identificador, con memoria acotada.
+     *
+     * Se usa una sesión sin estado (StatelessSession): no tiene caché de primer nivel ni comprueba cambios, así que
+     * cada empleado se descarta en cuanto se procesa. Las filas se leen con un cursor (ScrollableResults), fetchSize
+     * en cada viaje a la base de datos, y se devuelven como {@link EmployeeData}, que no son entidades.
+     * @param fetchSize - Filas que se leen en cada viaje a la base de datos
+     * @param action - Qué hacer con cada empleado
+     * @return Número de empleados recorridos
+     * @throws SQLException Excepción en caso de error
+     */
+    public long scanAll(int fetchSize, Consumer<EmployeeData> action) throws SQLException {
+        try (StatelessSession stateless = session.getSessionFactory().openStatelessSession();
+             ScrollableResults<EmployeeData> rows = stateless.createQuery(
+                             "select new com.unir.model.dto.EmployeeData(e.empNo, e.birthDate, e.firstName, e.lastName, " +
+                                     "cast(e.gender as String), e.hireDate) from Employee e order by e.empNo", EmployeeData.class)
+                     .setFetchSize(fetchSize)
+                     .setReadOnly(true)
+                     .scroll(ScrollMode.FORWARD_ONLY)) {
+            long count = 0;
+            while (rows.next()) {
+                action.accept(rows.get());
+                count++;
+            }
+            log.debug("Empleados recorridos: {}", count);
+            return count;
+        }
+    }
+
     /**
      * Consulta de todos los empleados de un departamento
      * @param departmentId Identificador del departamento
@@ -64,6 +124,12 @@ public class EmployeesDao {
      */
     public Boolean remove(Employee employee) throws SQLException {
         session.remove(employee);
+        if (Hibernate.isInitialized(employee.getDeptEmployees())) {
+            evictDeptEmployees(departmentsOf(employee));
+        } else {
+            // No sabemos a qué departamentos pertenecía: se descartan todas las colecciones
+            afterCommit(cache -> cache.evictCollectionData(DEPT_EMPLOYEES));
+        }
         return true;
     }
 
@@ -78,6 +144,66 @@ public class EmployeesDao {
         return employee;
     }
 
+    /**
+     * Inserta muchos empleados en lotes, cada uno con sus filas de dept_emp y salaries (colecciones deptEmployees y salaries).
+     * Esas filas deben hacer referencia al mismo objeto Employee, y sus departamentos deben existir.
+     * Debe llamarse dentro de una transacción. Los empleados guardados se desconectan de la sesión (ver Batch).
+     * @param employees - Empleados a insertar. Puede ser un Iterable que los vaya leyendo, para no tenerlos todos en memoria.
+     * @return Número de filas insertadas.
+     * @throws SQLException - Excepción en caso de error.
+     */
+    public int saveAll(Iterable<Employee> employees) throws SQLException {
+        Set<String> departments = new HashSet<>();
+        int count = Batch.persistAll(session, employees, employee -> {
+            List<Object> rows = new ArrayList<>();
+            if (employee.getDeptEmployees() != null) {
+                rows.addAll(employee.getDeptEmployees());
+                departments.addAll(departmentsOf(employee));
+            }
+            if (employee.getSalaries() != null) {
+                rows.addAll(employee.getSalaries());
+            }
+            return rows;
+        });
+        evictDeptEmployees(departments);
+        log.debug("Filas insertadas: {}", count);
+        return count;
+    }
+
+    private static Set<String> departmentsOf(Employee employee) {
+        Set<String> departments = new HashSet<>();
+        if (employee.getDeptEmployees() != null) {
+            for (DeptEmployee deptEmployee : employee.getDeptEmployees()) {
+                departments.add(deptEmployee.getDeptNo().getDeptNo());
+            }
+        }
+        return departments;
+    }
+
+    /**
+     * Descarta de la caché de segundo nivel la colección Department.deptEmployees de los departamentos indicados.
+     * OJO! Es el lado inverso de la relación (mappedBy): al guardar o borrar un DeptEmployee, Hibernate no toca la colección
+     * y su entrada en la caché seguiría con los empleados de antes.
+     * (hibernate.cache.auto_evict_collection_cache no sirve aquí: no admite que deptNo forme parte de la clave de dept_emp)
+     * @param departments - Identificadores de los departamentos
+     */
+    private void evictDeptEmployees(Set<String> departments) {
+        if (!departments.isEmpty()) {
+            afterCommit(cache -> departments.forEach(deptNo -> cache.evictCollectionData(DEPT_EMPLOYEES, deptNo)));
+        }
+    }
+
+    /**
+     * Ejecuta una acción sobre la caché de segundo nivel al terminar la transacción.
+     * Si se hiciera antes del commit, otra sesión podría volver a cachear la colección sin las filas nuevas.
+     * @param action - Acción sobre la caché
+     */
+    private void afterCommit(Consumer<Cache> action) {
+        Cache cache = session.getSessionFactory().getCache();
+        session.unwrap(SessionImplementor.class).getActionQueue()
+                .registerProcess((success, sessionImplementor) -> action.accept(cache));
+    }
+
     /**
      * Inserta un nuevo empleado en la base de datos si no existe.
      * Si existe, actualiza el empleado.
@@ -101,32 +227,35 @@ public class EmployeesDao {
     // Ejercicio: Metodo para la consulta 1 de la Actividad 2
     // Obtener el número de hombres y mujeres de la base de datos. Ordenar de forma descendente.
     // A diferencia de las consultas anteriores de ejemplo, consultas de agregaciones (COUNT, SUM) o
-    // combinaciones complejas (JOIN) no mapean directamente a las entidades. Por tanto, en lugar
-    // de devolver un objeto de tipo Employee, le pedimso una lista de objetos genéricos
-    public List<Object[]> findMenWomen() throws SQLException {
-        Query<Object[]> query = session.createNativeQuery(
-                "SELECT e.gender, COUNT(*) AS gender_count " +
-                        "FROM employees.employees e " +
-                        "GROUP BY e.gender " +
-                        "ORDER BY gender_count DESC"
+    // combinaciones complejas (JOIN) no mapean directamente a las entidades. En lugar de una lista de objetos
+    // genéricos (Object[]) que hay que convertir, con "select new" Hibernate construye un record con cada fila
+    public List<GenderCount> findMenWomen() throws SQLException {
+        Query<GenderCount> query = session.createQuery(
+                "select new com.unir.model.dto.GenderCount(cast(e.gender as String), count(*)) " +
+                        "from Employee e " +
+                        "group by e.gender " +
+                        "order by count(*) desc", GenderCount.class
         );
         return query.list();
     }
 
     // Ejercicio: Metodo para la consulta 2 y 3 de la Actividad 2
-    // Mostrar el nombre, apellido y salario de la persona mejor pagada de un departamento
+    // Mostrar el nombre, apellido y salario de las personas mejor pagadas de un departamento
     // concreto (parámetro variable).
-    public List<Object[]> findBestPaidEmployeesInDepartment(String departmentName) throws SQLException {
-        Query<Object[]> query = session.createNativeQuery(
-                "SELECT e.first_name, e.last_name, s.salary\n" +
-                "FROM employees.employees e\n" +
-                "JOIN employees.salaries s ON e.emp_no = s.emp_no\n" +
-                "JOIN employees.dept_emp de ON e.emp_no = de.emp_no\n" +
-                "JOIN employees.departments d ON de.dept_no = d.dept_no\n" +
-                "WHERE d.dept_name = :deptName\n" +
-                "ORDER BY s.salary DESC"
+    // setMaxResults se traduce a un LIMIT: la base de datos solo devuelve las primeras filas, en lugar de todos
+    // los salarios del departamento
+    public List<EmployeeSalary> findBestPaidEmployeesInDepartment(String departmentName, int limit) throws SQLException {
+        Query<EmployeeSalary> query = session.createQuery(
+                "select new com.unir.model.dto.EmployeeSalary(e.firstName, e.lastName, s.salary)\n" +
+                "from Salary s\n" +
+                "join s.empNo e\n" +
+                "join DeptEmployee de on de.empNo = e\n" +
+                "join de.deptNo d\n" +
+                "where d.deptName = :deptName\n" +
+                "order by s.salary desc", EmployeeSalary.class
         );
         query.setParameter("deptName", departmentName);
+        query.setMaxResults(limit);
         return query.list();
     }
 
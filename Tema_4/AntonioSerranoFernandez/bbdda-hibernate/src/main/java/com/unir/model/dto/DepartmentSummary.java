@@ -0,0 +1,10 @@
+package com.unir.model.dto;
+
+/**
+ * Departamento para listados: sus columnas y el número de empleados, sin cargar la colección de empleados.
+ * @param deptNo - Identificador del departamento
+ * @param deptName - Nombre del departamento
+ * @param employees - Número de filas de dept_emp del departamento
+ */
+public record DepartmentSummary(String deptNo, String deptName, Integer employees) {
+}
@@ -0,0 +1,15 @@
+package com.unir.model.dto;
+
+import java.util.Date;
+
+/**
+ * Datos de un empleado, sin relaciones. No es una entidad: Hibernate no la gestiona ni comprueba sus cambios.
+ * @param empNo - Identificador del empleado
+ * @param birthDate - Fecha de nacimiento
+ * @param firstName - Nombre
+ * @param lastName - Apellido
+ * @param gender - Género (M o F)
+ * @param hireDate - Fecha de contratación
+ */
+public record EmployeeData(Integer empNo, Date birthDate, String firstName, String lastName, String gender, Date hireDate) {
+}
@@ -0,0 +1,10 @@
+package com.unir.model.dto;
+
+/**
+ * Nombre de un empleado y uno de sus salarios.
+ * @param firstName - Nombre
+ * @param lastName - Apellido
+ * @param salary - Salario
+ */
+public record EmployeeSalary(String firstName, String lastName, Integer salary) {
+}
@@ -0,0 +1,9 @@
+package com.unir.model.dto;
+
+/**
+ * Número de empleados de un género.
+ * @param gender - Género (M o F)
+ * @param count - Número de empleados
+ */
+public record GenderCount(String gender, Long count) {
+}
@@ -5,18 +5,40 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.util.Set;
 
 //La anotación @Entity indica que la clase representa una entidad de la base de datos
 @Entity
 //La anotación @Table indica el nombre de la tabla de la base de datos que representa este objeto
 @Table(name = "departments")
+//@Cacheable y @Cache guardan los departamentos en la caché de segundo nivel, en la región "departments" (ver ehcache.xml)
+//READ_WRITE: si se modifica un departamento con Hibernate, la caché se actualiza al hacer commit.
+//OJO! Los cambios hechos por otro proceso o con SQL directo (por ejemplo, una carga con JDBC) no pasan por esta caché:
+//hasta que caduca la entrada (ver ehcache.xml) se sigue leyendo el valor anterior
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "departments")
+//@NamedEntityGraph define un plan de carga con nombre: qué relaciones LAZY se cargan junto a la entidad, en la misma consulta (JOIN).
+//Cada DAO elige el plan según lo que necesite (ver DepartmentsDao.FetchPlan). Un plan por colección: si se cargasen las dos
+//a la vez, la consulta devolvería el producto cartesiano de empleados por jefes.
+//El subgrafo carga también el empleado de cada fila de dept_emp/dept_manager, que si no se consultaría uno a uno
+@NamedEntityGraph(name = Department.GRAPH_EMPLOYEES,
+        attributeNodes = @NamedAttributeNode(value = "deptEmployees", subgraph = "employee"),
+        subgraphs = @NamedSubgraph(name = "employee", attributeNodes = @NamedAttributeNode("empNo")))
+@NamedEntityGraph(name = Department.GRAPH_MANAGERS,
+        attributeNodes = @NamedAttributeNode(value = "deptManagers", subgraph = "employee"),
+        subgraphs = @NamedSubgraph(name = "employee", attributeNodes = @NamedAttributeNode("empNo")))
 @Getter
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
 public class Department {
 
+    // Nombres de los planes de carga
+    public static final String GRAPH_EMPLOYEES = "Department.employees";
+    public static final String GRAPH_MANAGERS = "Department.managers";
+
     //La anotación @Id indica que el atributo es la clave primaria de la tabla
     //La anotación @Column indica el nombre de la columna en la tabla
     //Con @GeneratedValue se indica que el valor de la clave primaria se genera automáticamente (
@@ -35,10 +57,15 @@ public class Department {
     // fetch indica la forma en la que se obtienen los datos de la relación:
     // FetchType.EAGER indica que se obtienen los datos de la relación al mismo tiempo que se obtienen los datos de la entidad
     // FetchType.LAZY indica que se obtienen los datos de la relación solo cuando se accede a ellos
-    @OneToMany(mappedBy = "deptNo", fetch = FetchType.EAGER)
+    // OJO! Con EAGER, cargar un departamento traía todas sus filas de dept_emp (decenas de miles). Ahora las dos
+    // relaciones son LAZY y se cargan con un plan de carga (@NamedEntityGraph) solo cuando se necesitan
+    // @Cache en una colección guarda las claves de sus elementos; los elementos (DeptEmployee) se cachean en su propia región.
+    // Al ser el lado inverso, Hibernate no actualiza la entrada al guardar o borrar un DeptEmployee: lo hace EmployeesDao
+    @OneToMany(mappedBy = "deptNo", fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "departments.deptEmployees")
     private Set<DeptEmployee> deptEmployees;
 
     // Ejercicio: Relación @OneToMany de la tabla departments con dept_manager
-    @OneToMany(mappedBy = "deptNo", fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "deptNo", fetch = FetchType.LAZY)
     private Set<DeptManager> deptManagers;
 }
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import jakarta.persistence.*;
 import java.util.Date;
 
@@ -11,6 +13,8 @@ import java.util.Date;
 @Table(name = "dept_emp")
 // @IdClass se utiliza para indicar que la clase tiene una clave primaria compuesta. La clase referenciada contiene la definición de la clave primaria
 @IdClass(DeptEmployeeId.class)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "dept_emp")
 @Getter
 @Setter
 @AllArgsConstructor
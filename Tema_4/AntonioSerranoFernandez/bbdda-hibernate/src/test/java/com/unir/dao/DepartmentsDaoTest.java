@@ -0,0 +1,205 @@
+package com.unir.dao;
+
+import com.unir.config.HibernateMySqlConfig;
+import com.unir.model.dto.DepartmentSummary;
+import com.unir.model.mysql.Department;
+import com.unir.model.mysql.DeptEmployee;
+import com.unir.model.mysql.DeptEmployeeId;
+import com.unir.model.mysql.DeptManager;
+import com.unir.model.mysql.Employee;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Environment;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sentencias SQL de cada método de {@link DepartmentsDao}, contadas con las estadísticas de Hibernate.
+ * Se usa H2 en memoria en modo MySQL, con las tablas creadas por Hibernate a partir de las entidades:
+ * 9 departamentos, de los que solo d001 y d002 tienen empleados y jefes.
+ */
+class DepartmentsDaoTest {
+
+    private static final int DEPARTAMENTOS = 9;
+
+    // Empleados de d001 y d002
+    private static final int EMPLEADOS = 3;
+
+    private static SessionFactory sessionFactory;
+
+    private Session session;
+    private DepartmentsDao departmentsDao;
+    private Statistics statistics;
+
+    @BeforeAll
+    static void createDatabase() {
+        Properties settings = new Properties();
+        settings.put(Environment.URL, "jdbc:h2:mem:employees;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        settings.put(Environment.USER, "sa");
+        settings.put(Environment.PASS, "");
+        settings.put(Environment.DIALECT, "org.hibernate.dialect.H2Dialect");
+        settings.put(Environment.SHOW_SQL, "false");
+        settings.put(Environment.HBM2DDL_AUTO, "create");
+        sessionFactory = HibernateMySqlConfig.buildSessionFactory(settings);
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            Date date = Date.valueOf("1990-01-01");
+            for (int i = 1; i <= DEPARTAMENTOS; i++) {
+                Department department = new Department();
+                department.setDeptNo("d00" + i);
+                department.setDeptName("Department " + i);
+                session.persist(department);
+
+                if (i <= 2) {
+                    for (int j = 0; j < EMPLEADOS; j++) {
+                        Employee employee = new Employee();
+                        employee.setEmpNo(i * 1000 + j);
+                        employee.setFirstName("Employee" + j);
+                        employee.setLastName("Department" + i);
+                        employee.setBirthDate(date);
+                        employee.setHireDate(date);
+                        session.persist(employee);
+                        session.persist(new DeptEmployee(employee, department, date, date));
+                        if (j == 0) {
+                            session.persist(new DeptManager(employee, department, date, date));
+                        }
+                    }
+                }
+            }
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    static void closeDatabase() {
+        sessionFactory.close();
+    }
+
+    @BeforeEach
+    void openSession() {
+        // Cada prueba empieza con la caché de segundo nivel vacía, para que todo se lea de la base de datos
+        sessionFactory.getCache().evictAllRegions();
+        statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        session = sessionFactory.openSession();
+        departmentsDao = new DepartmentsDao(session);
+    }
+
+    @AfterEach
+    void closeSession() {
+        session.close();
+    }
+
+    @Test
+    void findByIdBasicLoadsOnlyTheDepartment() throws SQLException {
+        Department department = departmentsDao.findById("d002");
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertFalse(Hibernate.isInitialized(department.getDeptEmployees()));
+        assertFalse(Hibernate.isInitialized(department.getDeptManagers()));
+    }
+
+    @Test
+    void findByIdEmployeesLoadsEmployeesInOneStatement() throws SQLException {
+        Department department = departmentsDao.findById("d002", DepartmentsDao.FetchPlan.EMPLOYEES);
+
+        assertTrue(Hibernate.isInitialized(department.getDeptEmployees()));
+        assertEquals(EMPLEADOS, department.getDeptEmployees().size());
+        department.getDeptEmployees().forEach(deptEmployee -> deptEmployee.getEmpNo().getFirstName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertFalse(Hibernate.isInitialized(department.getDeptManagers()));
+    }
+
+    @Test
+    void findByIdManagersLoadsManagersInOneStatement() throws SQLException {
+        Department department = departmentsDao.findById("d002", DepartmentsDao.FetchPlan.MANAGERS);
+
+        assertTrue(Hibernate.isInitialized(department.getDeptManagers()));
+        assertEquals(1, department.getDeptManagers().size());
+        department.getDeptManagers().forEach(deptManager -> deptManager.getEmpNo().getFirstName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertFalse(Hibernate.isInitialized(department.getDeptEmployees()));
+    }
+
+    @Test
+    void findAllSummariesCountsEmployeesInOneStatement() throws SQLException {
+        List<DepartmentSummary> summaries = departmentsDao.findAllSummaries();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(DEPARTAMENTOS, summaries.size());
+        assertEquals(new DepartmentSummary("d001", "Department 1", EMPLEADOS), summaries.getFirst());
+        assertEquals(0, summaries.getLast().employees());
+    }
+
+    @ParameterizedTest
+    @EnumSource(DepartmentsDao.FetchPlan.class)
+    void findAllReturnsEveryDepartmentInOneStatement(DepartmentsDao.FetchPlan plan) throws SQLException {
+        List<Department> departments = departmentsDao.findAll(plan);
+
+        assertEquals(DEPARTAMENTOS, departments.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findByIdInAnotherSessionHitsTheSecondLevelCache() throws SQLException {
+        departmentsDao.findById("d002");
+        statistics.clear();
+
+        try (Session other = sessionFactory.openSession()) {
+            Department department = new DepartmentsDao(other).findById("d002");
+
+            assertEquals("Department 2", department.getDeptName());
+            assertEquals(0, statistics.getPrepareStatementCount());
+            assertEquals(1, statistics.getSecondLevelCacheHitCount());
+        }
+    }
+
+    @Test
+    void savingADeptEmployeeEvictsTheCachedCollection() throws SQLException {
+        // La colección de d002 queda en la caché de segundo nivel
+        assertEquals(EMPLEADOS, departmentsDao.findById("d002").getDeptEmployees().size());
+
+        Date date = Date.valueOf("2000-01-01");
+        Employee employee = new Employee();
+        employee.setEmpNo(9999);
+        employee.setFirstName("New");
+        employee.setLastName("Employee");
+        employee.setBirthDate(date);
+        employee.setHireDate(date);
+        try (Session other = sessionFactory.openSession()) {
+            other.beginTransaction();
+            employee.setDeptEmployees(Set.of(new DeptEmployee(employee, other.getReference(Department.class, "d002"), date, date)));
+            new EmployeesDao(other).saveAll(List.of(employee));
+            other.getTransaction().commit();
+        }
+
+        try (Session other = sessionFactory.openSession()) {
+            Department department = new DepartmentsDao(other).findById("d002");
+            assertEquals(EMPLEADOS + 1, department.getDeptEmployees().size());
+
+            // Se deja la base de datos como estaba para el resto de pruebas
+            other.beginTransaction();
+            other.remove(other.find(DeptEmployee.class, new DeptEmployeeId(employee.getEmpNo(), "d002")));
+            other.remove(other.find(Employee.class, employee.getEmpNo()));
+            other.getTransaction().commit();
+        }
+    }
+}
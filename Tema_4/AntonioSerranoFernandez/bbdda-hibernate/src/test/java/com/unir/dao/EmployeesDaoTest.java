@@ -0,0 +1,113 @@
+package com.unir.dao;
+
+import com.unir.config.HibernateMySqlConfig;
+import com.unir.model.mysql.Department;
+import com.unir.model.mysql.DeptEmployee;
+import com.unir.model.mysql.Employee;
+import com.unir.model.mysql.Salary;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Environment;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Escritura en lotes de {@link EmployeesDao#saveAll}, con H2 en memoria en modo MySQL.
+ */
+class EmployeesDaoTest {
+
+    private static final int EMPLEADOS = 1000;
+
+    // Filas de cada empleado: employees, dept_emp y salaries
+    private static final int FILAS = 3;
+
+    private static SessionFactory sessionFactory;
+
+    @BeforeAll
+    static void createDatabase() {
+        Properties settings = new Properties();
+        settings.put(Environment.URL, "jdbc:h2:mem:saveall;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        settings.put(Environment.USER, "sa");
+        settings.put(Environment.PASS, "");
+        settings.put(Environment.DIALECT, "org.hibernate.dialect.H2Dialect");
+        settings.put(Environment.SHOW_SQL, "false");
+        settings.put(Environment.HBM2DDL_AUTO, "create");
+        sessionFactory = HibernateMySqlConfig.buildSessionFactory(settings);
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            Department department = new Department();
+            department.setDeptNo("d001");
+            department.setDeptName("Department 1");
+            session.persist(department);
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    static void closeDatabase() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void saveAllSendsBatchesAndKeepsTheSessionBounded() throws SQLException {
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        int[] maxEntities = {0};
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            Department department = session.getReference(Department.class, "d001");
+
+            // Los empleados se crean según se recorren, y en cada uno se mira cuántas entidades tiene la sesión
+            Iterable<Employee> employees = () -> IntStream.range(0, EMPLEADOS)
+                    .mapToObj(i -> {
+                        maxEntities[0] = Math.max(maxEntities[0], session.getStatistics().getEntityCount());
+                        return employee(i, department);
+                    })
+                    .iterator();
+            int rows = new EmployeesDao(session).saveAll(employees);
+            session.getTransaction().commit();
+
+            assertEquals(EMPLEADOS * FILAS, rows);
+            assertEquals(0, session.getStatistics().getEntityCount());
+        }
+
+        // Cada vaciado de la sesión prepara una sentencia por tabla y envía todas sus filas en un lote JDBC.
+        // Sin lotes serían EMPLEADOS * FILAS sentencias
+        long flushes = (long) EMPLEADOS * FILAS / HibernateMySqlConfig.LOTE + 1;
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements <= FILAS * flushes, "Sentencias preparadas: " + statements);
+
+        // La sesión nunca guarda más de un lote (más las filas del último empleado)
+        assertTrue(maxEntities[0] <= HibernateMySqlConfig.LOTE + FILAS, "Entidades en la sesión: " + maxEntities[0]);
+
+        try (Session session = sessionFactory.openSession()) {
+            assertEquals(EMPLEADOS, session.createQuery("select count(*) from Salary", Long.class).getSingleResult());
+        }
+    }
+
+    private static Employee employee(int i, Department department) {
+        Date date = Date.valueOf("1990-01-01");
+        Employee employee = new Employee();
+        employee.setEmpNo(100_000 + i);
+        employee.setFirstName("Employee" + i);
+        employee.setLastName("Batch");
+        employee.setBirthDate(date);
+        employee.setHireDate(date);
+        employee.setDeptEmployees(Set.of(new DeptEmployee(employee, department, date, date)));
+        employee.setSalaries(Set.of(new Salary(employee, date, 40000, date)));
+        return employee;
+    }
+}